@@ -1,10 +1,22 @@
 package org.example;
 
+import java.util.UUID;
+
 public class Constants
 {
     public static final String BASE_DIRECTORY = System.getProperty("user.dir")+ "/storage";
 
-    public static final int POOL_SIZE = 5;
+    public static final int POOL_SIZE = Integer.getInteger("db.pool.size", 5);
+
+    public static final int FETCH_SIZE = Integer.getInteger("db.fetch.size", 1000);
+
+    public static final int STATEMENT_CACHE_SIZE = Integer.getInteger("db.statement.cache.size", 1024); //SQL texts kept by QueryUtility, the rest are built per call
+
+    public static final boolean CHANGE_FEED = Boolean.getBoolean("db.change.feed");
+
+    public static final String CHANGE_CHANNEL = "nmslite_changes";
+
+    public static final int CHANGE_RECONNECT_INTERVAL = 1000;
 
     public static final int DB_PORT = 5432;
 
@@ -18,6 +30,8 @@ public class Constants
 
     public static final int HTTP_PORT = 8080;
 
+    public static final int HTTP_COMPRESSION_LEVEL = Integer.getInteger("http.compression.level", 1); //Fastest gzip level already shrinks JSON several times
+
     public static final String CREDENTIALS = "credentials";
 
     public static final String DISCOVERIES = "discoveries";
@@ -26,12 +40,62 @@ public class Constants
 
     public static final String OBJECTS = "objects";
 
+    public static final String NODES = "nodes";
+
+    public static final String ALERT_RULES = "alert_rules";
+
+    public static final boolean CLUSTER_MODE = Boolean.getBoolean("cluster.enabled");
+
+    public static final String NODE_ID = System.getProperty("cluster.node.id", UUID.randomUUID().toString());
+
+    public static final int NODE_HEARTBEAT_INTERVAL = Integer.getInteger("cluster.heartbeat.interval", 5000);
+
+    public static final int NODE_LEASE_TIMEOUT = Integer.getInteger("cluster.lease.timeout", 15000);
+
+    public static final int VIRTUAL_NODES = Integer.getInteger("cluster.virtual.nodes", 128);
+
     public static final String OBJECT_PROVISION = "object.objects";
 
     public static final String OBJECT_POLL = "object.poll";
 
+    public static final String METRIC_SCHEDULE = "metric.schedule";
+
+    public static final String OBJECT_POLL_BATCH = "object.poll.batch";
+
+    public static final String POLL_DEFERRED = "object.poll.deferred";
+
     public static final String FILE_WRITE = "file.write";
 
+    public static final String POLL_RESULT = "poll.result";
+
+    public static final String ALERT = "alert";
+
+    public static final int ALERT_CLEANUP_INTERVAL = 60000;
+
+    public static final String METRIC_QUERY = "metric.query";
+
+    public static final String TSDB_DIRECTORY = System.getProperty("user.dir") + "/tsdb";
+
+    public static final long TSDB_PARTITION = Long.getLong("tsdb.partition", 7200); //Seconds of data per segment
+
+    public static final long TSDB_SEAL_DELAY = Long.getLong("tsdb.seal.delay", 600); //Seconds a partition stays open for late results
+
+    public static final long TSDB_RETENTION = Long.getLong("tsdb.retention", 7 * 86400); //Seconds
+
+    public static final long TSDB_RETENTION_5M = Long.getLong("tsdb.retention.5m", 30 * 86400L);
+
+    public static final long TSDB_RETENTION_1H = Long.getLong("tsdb.retention.1h", 365 * 86400L);
+
+    public static final long TSDB_RETENTION_1D = Long.getLong("tsdb.retention.1d", 5 * 365 * 86400L);
+
+    public static final int TSDB_MAX_POINTS = Integer.getInteger("tsdb.max.points", 1000); //Per series, decides the resolution when no step is given
+
+    public static final int TSDB_MAINTENANCE_INTERVAL = 60000;
+
+    public static final long TSDB_DEFAULT_RANGE = 3600; //Seconds queried when no range is given
+
+    public static final String FILE_SEALED = "file.sealed";
+
     public static final int SNMP_POLL_INTERVAL = 180;
 
     public static final int INTERFACE_POLL_INTERVAL = 210;
@@ -52,14 +116,90 @@ public class Constants
 
     public static final String PLUGIN_PATH = "/home/aakash/Plugin/metrics/metrics";
 
+    public static final String PLUGIN_WORKER_FLAG = "--worker";
+
+    public static final int PLUGIN_WORKERS = Integer.getInteger("plugin.workers", 0); //0 spawns one plugin process per poll
+
+    public static final long PLUGIN_TIMEOUT = 60000;
+
+    public static final long PLUGIN_HEALTH_TIMEOUT = 5000;
+
+    public static final int PLUGIN_HEALTH_INTERVAL = 30000;
+
+    public static final String HEALTH = "health";
+
     public static final String IP = "127.0.0.1";
 
     public static final int ZMQ_PORT = 5556;
 
-    public static final int PERIODIC_INTERVAL = 5000;
+    public static final boolean VIRTUAL_THREADS = "virtual".equals(System.getProperty("blocking.mode", "worker"));
+
+    public static final int POLL_THREADS = Integer.getInteger("poll.threads", 20);
+
+    public static final int DISCOVERY_THREADS = Integer.getInteger("discovery.threads", 10);
+
+    //Virtual threads are cheap, so the limiter may let far more polls run at once than the worker pool would
+    public static final int POLL_LIMIT_MAX = Integer.getInteger("poll.limit.max", VIRTUAL_THREADS ? 1000 : POLL_THREADS);
+
+    public static final int LIMITER_INITIAL_LIMIT = Integer.getInteger("poll.limit.initial", 4);
+
+    public static final int LIMITER_QUEUE_SIZE = Integer.getInteger("poll.limit.queue", 200); //Per lane, polls beyond it are shed
+
+    public static final long LIMITER_LATENCY_THRESHOLD = Long.getLong("poll.limit.latency", 10000); //Slower polls count as congestion
+
+    public static final int POLL_DEFER_DELAY = Integer.getInteger("poll.defer.delay", 30000);
+
+    public static final boolean POLL_COALESCE = Boolean.getBoolean("poll.coalesce");
+
+    public static final int COALESCE_WINDOW = Integer.getInteger("poll.coalesce.window", 30000);
+
+    //Above 1 the plugin must support batched polls, see Poller.startBatchPoll, so it stays off unless the plugin was built with it
+    public static final int POLL_BATCH_SIZE = Integer.getInteger("poll.batch.size", 1); //1 sends every poll on its own
+
+    public static final int POLL_BATCH_WINDOW = Integer.getInteger("poll.batch.window", 200);
+
+    public static final int SCHEDULE_JITTER = Integer.getInteger("scheduler.jitter", 1000); //At most a tenth of the interval
+
+    public static final int SERVER_INSTANCES = Integer.getInteger("server.instances", 1);
+
+    public static final int SCHEDULER_INSTANCES = Integer.getInteger("scheduler.instances", 1);
+
+    public static final int POLLER_INSTANCES = Integer.getInteger("poller.instances", 1);
+
+    public static final int WRITER_INSTANCES = Integer.getInteger("writer.instances", 1);
+
+    public static final int SCHEDULER_TICK = Integer.getInteger("scheduler.tick", 250);
 
     public static final int DATABASE_INTERVAL = 10000;
 
+    public static final int SENDER_QUEUE_SIZE = Integer.getInteger("sender.queue.size", 1024);
+
+    public static final int SENDER_CHUNK_SIZE = 64 * 1024;
+
+    public static final long SENDER_STOP_TIMEOUT = 5000;
+
+    public static final boolean ACKNOWLEDGED_DELIVERY = Boolean.getBoolean("delivery.acknowledged");
+
+    public static final int ACKNOWLEDGEMENT_TIMEOUT = Integer.getInteger("delivery.ack.timeout", 10000);
+
+    public static final int ACKNOWLEDGEMENT_WINDOW = Integer.getInteger("delivery.ack.window", 64);
+
+    public static final String SENDER_LOG_PATH = System.getProperty("user.dir") + "/sender.log"; //Kept outside BASE_DIRECTORY as every file there is shipped
+
+    public static final String FILE_FORMAT = System.getProperty("file.format", "binary"); //binary or text
+
+    public static final int FILE_FLUSH_INTERVAL = Integer.getInteger("file.flush.interval", 100);
+
+    public static final int FILE_FLUSH_SIZE = Integer.getInteger("file.flush.size", 64 * 1024);
+
+    public static final int FILE_IDLE_TIMEOUT = Integer.getInteger("file.idle.timeout", 500); //Idle files are sealed and shipped
+
+    public static final int PAGE_LIMIT = Integer.getInteger("api.page.limit", 1000); //Rows returned by a list endpoint when no limit is given
+
+    public static final int PAGE_MAX_LIMIT = Integer.getInteger("api.page.max", 10000);
+
+    public static final int RESPONSE_CHUNK_SIZE = 64 * 1024; //Bytes of rows written to a list response at once
+
     public static final String STATUS_CODE = "status.code";
 
     public static final String MESSAGE = "message";
@@ -68,5 +208,7 @@ public class Constants
 
     public static final String CONTEXT = "data";
 
+    public static final String NEXT_CURSOR = "next.cursor";
+
 
 }
@@ -1,19 +1,36 @@
 package org.example;
 import io.vertx.core.CompositeFuture;
+import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Future;
-import io.vertx.core.Promise;
+import io.vertx.core.Verticle;
 import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import org.example.database.AlertRuleRow;
+import org.example.database.CredentialRow;
+import org.example.database.DiscoveryRow;
+import org.example.database.MetricRow;
+import org.example.database.ObjectRow;
 import org.example.database.QueryUtility;
+import org.example.database.Schema;
+import org.example.database.Store;
+import org.example.poll.Cluster;
+import org.example.poll.PollBatcher;
 import org.example.poll.Poller;
 import org.example.poll.Scheduler;
 import org.example.routes.Server;
+import org.example.sevices.AlertEngine;
+import org.example.sevices.ChangeFeed;
 import org.example.sevices.FileSender;
 import org.example.sevices.FileWriter;
+import org.example.sevices.MetricStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
 
 public class Main
 {
@@ -21,31 +38,56 @@ public class Main
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Main.class);
 
-    public static final Map<Long, JsonObject> discoveries = new ConcurrentHashMap<>();
+    public static final Store<DiscoveryRow> discoveries = new Store<DiscoveryRow>()
+            .index("name", DiscoveryRow::name);
+
+    public static final Store<CredentialRow> credentials = new Store<CredentialRow>()
+            .index("profile_name", CredentialRow::profileName);
 
-    public static final Map<Long, JsonObject> credentials = new ConcurrentHashMap<>();
+    public static final Store<ObjectRow> objects = new Store<ObjectRow>()
+            .index("ip", ObjectRow::ip);
 
-    public static final Map<Long, JsonObject> objects = new ConcurrentHashMap<>();
+    public static final Store<MetricRow> metrics = new Store<MetricRow>()
+            .index("metric_object", MetricRow::metricObject);
 
-    public static final Map<Long, JsonObject> metrics = new ConcurrentHashMap<>();
+    public static final Store<AlertRuleRow> alertRules = new Store<AlertRuleRow>()
+            .index("rule_name", AlertRuleRow::ruleName)
+            .index("scope", AlertRuleRow::scope);
+
+    //Set once the first load of the tables is done, until then a row may be missing only because it is not loaded yet
+    public static volatile boolean tablesLoaded;
 
 
     public static void main(String[] args)
     {
         try
         {
-            init()
+            //Tables the change feed watches and the load reads, so nothing else starts before them
+            Schema.create()
+
+                    //Everything except the API can run while the tables are still loading, metrics are scheduled as they arrive
+                    .compose(result -> Constants.CLUSTER_MODE ? vertx.deployVerticle(new Cluster()) : Future.succeededFuture(""))
 
-                    .compose(result -> vertx.deployVerticle(new Server()))
+                    .compose(result -> deploy(instance -> new Scheduler(instance, Constants.SCHEDULER_INSTANCES), Constants.SCHEDULER_INSTANCES))
 
-                    .compose(result -> vertx.deployVerticle(new Scheduler()))
+                    .compose(result -> deploy(instance -> new PollBatcher(), Constants.POLLER_INSTANCES))
 
-                    .compose(result -> vertx.deployVerticle(new Poller()))
+                    .compose(result -> deploy(Poller::new, Constants.POLLER_INSTANCES))
 
-                    .compose(result -> vertx.deployVerticle(new FileWriter()))
+                    .compose(result -> deploy(FileWriter::new, Constants.WRITER_INSTANCES))
 
+                    .compose(result -> vertx.deployVerticle(new MetricStore()))
+
+                    .compose(result -> vertx.deployVerticle(new AlertEngine()))
+
+                    //Single instance, it owns the ZMQ socket and the sender log
                     .compose(result -> vertx.deployVerticle(new FileSender()))
 
+                    //The change feed loads the tables itself, so that changes made during the load are not lost
+                    .compose(result -> Constants.CHANGE_FEED ? vertx.deployVerticle(new ChangeFeed()).mapEmpty() : init().mapEmpty())
+
+                    .compose(result -> deploy(instance -> new Server(), Constants.SERVER_INSTANCES))
+
                     .onComplete(result ->
                     {
                         if (result.succeeded())
@@ -64,46 +106,68 @@ public class Main
         }
     }
 
-    private static CompositeFuture init()
+    //Every instance runs on an event loop of its own, instance numbers let a verticle pick its share of the work
+    private static Future<String> deploy(IntFunction<Verticle> verticle, int instances)
+    {
+        var instance = new AtomicInteger();
+
+        return vertx.deployVerticle(() -> verticle.apply(instance.getAndIncrement()), new DeploymentOptions().setInstances(instances));
+    }
+
+    public static CompositeFuture init()
     {
+        var scheduled = new JsonArray();
+
         return Future.all(
-                        loadTable(Constants.DISCOVERIES, discoveries, "discovery_id"),
+                        loadTable(Constants.DISCOVERIES, discoveries, "discovery_id", DiscoveryRow::fromJson, id -> {}),
 
-                        loadTable(Constants.CREDENTIALS, credentials, "profile_id"),
+                        loadTable(Constants.CREDENTIALS, credentials, "profile_id", CredentialRow::fromJson, id -> {}),
 
-                        loadTable(Constants.OBJECTS, objects, "object_id"),
+                        loadTable(Constants.OBJECTS, objects, "object_id", ObjectRow::fromJson, id -> {}),
 
-                        loadTable(Constants.METRICS, metrics, "metric_id")
+                        loadTable(Constants.ALERT_RULES, alertRules, "rule_id", AlertRuleRow::fromJson, id -> {}),
 
-                ).onSuccess(v -> LOGGER.info("All tables loaded"))
+                        loadTable(Constants.METRICS, metrics, "metric_id", MetricRow::fromJson, id ->
+                        {
+                            scheduled.add(id);
+
+                            if (scheduled.size() >= Constants.FETCH_SIZE)
+                            {
+                                schedule(scheduled);
+                            }
+                        }).onSuccess(v -> schedule(scheduled))
+
+                ).onSuccess(v ->
+                {
+                    tablesLoaded = true;
+
+                    LOGGER.info("All tables loaded");
+                })
 
                 .onFailure(error -> LOGGER.error("Database initialization failed", error));
     }
 
-    private static Future<Void> loadTable(String tableName, Map<Long, JsonObject> map, String id)
+    //Rows are put in the store as the cursor returns them, the whole table is never held twice
+    private static <T> Future<Void> loadTable(String tableName, Store<T> map, String id, Function<JsonObject, T> mapper, Consumer<Long> loaded)
     {
-        var promise = Promise.<Void>promise();
+        return QueryUtility.getInstance().stream(tableName, Constants.FETCH_SIZE, object ->
+        {
+            var rowId = object.getLong(id);
+
+            map.put(rowId, mapper.apply(object));
 
-        QueryUtility.getInstance().getAll(tableName).onComplete(result ->
+            loaded.accept(rowId);
+
+        }).onSuccess(v -> LOGGER.info("Loaded {} rows from {}", map.size(), tableName));
+    }
+
+    private static void schedule(JsonArray metricIds)
+    {
+        if (!metricIds.isEmpty())
         {
-            if (result.succeeded())
-            {
-                var rows = result.result();
+            vertx.eventBus().publish(Constants.METRIC_SCHEDULE, metricIds.copy());
 
-                for (int i = 0; i < rows.size(); i++)
-                {
-                    var object = rows.getJsonObject(i);
-
-                    map.put(object.getLong(id), object);
-                }
-                promise.complete();
-            }
-            else
-            {
-                promise.fail(result.cause());
-            }
-        });
-
-        return promise.future();
+            metricIds.clear();
+        }
     }
-}
\ No newline at end of file
+}
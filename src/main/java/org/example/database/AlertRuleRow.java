@@ -0,0 +1,73 @@
+package org.example.database;
+
+import io.vertx.core.json.JsonObject;
+
+//Cached row of the alert_rules table, rule_object is null for a rule that applies to every object of its metric group
+public record AlertRuleRow(long ruleId, String ruleName, String metricGroupName, String metric, String ruleType,
+                           String operator, double threshold, String severity, Long ruleObject)
+{
+    public static final String THRESHOLD = "threshold";
+
+    public static final String RATE = "rate"; //Change per second between two consecutive polls
+
+    //What a rule is looked up by, ruleObject is null for the rules of every object of the group
+    public record Scope(String metricGroupName, Long ruleObject)
+    {
+
+    }
+
+    public static AlertRuleRow fromJson(JsonObject row)
+    {
+        return new AlertRuleRow(
+                row.getLong("rule_id"),
+                row.getString("rule_name"),
+                row.getString("metric_group_name"),
+                row.getString("metric"),
+                row.getString("rule_type"),
+                row.getString("operator"),
+                row.getDouble("threshold"),
+                row.getString("severity"),
+                row.getLong("rule_object"));
+    }
+
+    public JsonObject toJson()
+    {
+        return new JsonObject()
+                .put("rule_id", ruleId)
+                .put("rule_name", ruleName)
+                .put("metric_group_name", metricGroupName)
+                .put("metric", metric)
+                .put("rule_type", ruleType)
+                .put("operator", operator)
+                .put("threshold", threshold)
+                .put("severity", severity)
+                .put("rule_object", ruleObject);
+    }
+
+    //Copy with the columns present in changes replaced
+    public AlertRuleRow with(JsonObject changes)
+    {
+        return fromJson(toJson().mergeIn(changes));
+    }
+
+    public Scope scope()
+    {
+        return new Scope(metricGroupName, ruleObject);
+    }
+
+    public boolean breached(double value)
+    {
+        return switch (operator)
+        {
+            case ">" -> value > threshold;
+
+            case ">=" -> value >= threshold;
+
+            case "<" -> value < threshold;
+
+            case "<=" -> value <= threshold;
+
+            default -> false;
+        };
+    }
+}
@@ -0,0 +1,43 @@
+package org.example.database;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.Set;
+
+//Cached row of the credentials table, converted to JSON only when it leaves through the API
+public record CredentialRow(long profileId, String profileName, String profileProtocol, String userName,
+                            String userPassword, String community, String version)
+{
+    //Columns an update may set, the ID is not one of them
+    public static final Set<String> UPDATABLE = Set.of("profile_name", "profile_protocol", "user_name", "user_password", "community", "version");
+
+    public static CredentialRow fromJson(JsonObject row)
+    {
+        return new CredentialRow(
+                row.getLong("profile_id"),
+                row.getString("profile_name"),
+                row.getString("profile_protocol"),
+                row.getString("user_name"),
+                row.getString("user_password"),
+                row.getString("community"),
+                row.getString("version"));
+    }
+
+    public JsonObject toJson()
+    {
+        return new JsonObject()
+                .put("profile_id", profileId)
+                .put("profile_name", profileName)
+                .put("profile_protocol", profileProtocol)
+                .put("user_name", userName)
+                .put("user_password", userPassword)
+                .put("community", community)
+                .put("version", version);
+    }
+
+    //Copy with the columns present in changes replaced
+    public CredentialRow with(JsonObject changes)
+    {
+        return fromJson(toJson().mergeIn(changes));
+    }
+}
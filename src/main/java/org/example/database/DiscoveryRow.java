@@ -0,0 +1,83 @@
+package org.example.database;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+//Cached row of the discoveries table, converted to JSON only when it leaves through the API
+public record DiscoveryRow(long discoveryId, Long credentialProfile, String name, String ip, int port,
+                           long[] credentialProfiles, String deviceType, String hostname, String status)
+{
+    //Columns an update may set, the ID is not one of them
+    public static final Set<String> UPDATABLE = Set.of("credential_profile", "name", "ip", "port", "credential_profiles", "device_type", "hostname", "status");
+
+    public static DiscoveryRow fromJson(JsonObject row)
+    {
+        return new DiscoveryRow(
+                row.getLong("discovery_id"),
+                row.getLong("credential_profile"),
+                row.getString("name"),
+                row.getString("ip"),
+                row.getInteger("port", 0),
+                toLongs(row.getValue("credential_profiles")),
+                row.getString("device_type"),
+                row.getString("hostname"),
+                row.getString("status"));
+    }
+
+    public JsonObject toJson()
+    {
+        var profiles = new JsonArray();
+
+        for (var profile : credentialProfiles)
+        {
+            profiles.add(profile);
+        }
+
+        return new JsonObject()
+                .put("discovery_id", discoveryId)
+                .put("credential_profile", credentialProfile)
+                .put("name", name)
+                .put("ip", ip)
+                .put("port", port)
+                .put("credential_profiles", profiles)
+                .put("device_type", deviceType)
+                .put("hostname", hostname)
+                .put("status", status);
+    }
+
+    //Copy with the columns present in changes replaced
+    public DiscoveryRow with(JsonObject changes)
+    {
+        return fromJson(toJson().mergeIn(changes));
+    }
+
+    //Column comes back as a JSON array from json columns and as a Java array from bigint[] columns
+    private static long[] toLongs(Object value)
+    {
+        List<?> values = switch (value)
+        {
+            case JsonArray array -> array.getList();
+
+            case Object[] array -> Arrays.asList(array);
+
+            case List<?> list -> list;
+
+            case String text -> new JsonArray(text).getList();
+
+            case null, default -> List.of();
+        };
+
+        var longs = new long[values.size()];
+
+        for (int i = 0; i < longs.length; i++)
+        {
+            longs[i] = ((Number) values.get(i)).longValue();
+        }
+
+        return longs;
+    }
+}
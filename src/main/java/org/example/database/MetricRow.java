@@ -0,0 +1,25 @@
+package org.example.database;
+
+import io.vertx.core.json.JsonObject;
+
+//Cached row of the metrics table, read on every scheduled poll so the fields are kept primitive
+public record MetricRow(long metricId, String metricGroupName, int metricPollTime, long metricObject)
+{
+    public static MetricRow fromJson(JsonObject row)
+    {
+        return new MetricRow(
+                row.getLong("metric_id"),
+                row.getString("metric_group_name"),
+                row.getInteger("metric_poll_time"),
+                row.getLong("metric_object"));
+    }
+
+    public JsonObject toJson()
+    {
+        return new JsonObject()
+                .put("metric_id", metricId)
+                .put("metric_group_name", metricGroupName)
+                .put("metric_poll_time", metricPollTime)
+                .put("metric_object", metricObject);
+    }
+}
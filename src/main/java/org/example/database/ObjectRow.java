@@ -0,0 +1,29 @@
+package org.example.database;
+
+import io.vertx.core.json.JsonObject;
+
+//Cached row of the objects table, converted to JSON only when it leaves through the API
+public record ObjectRow(long objectId, long credentialProfile, String ip, int port, String hostname, String deviceType)
+{
+    public static ObjectRow fromJson(JsonObject row)
+    {
+        return new ObjectRow(
+                row.getLong("object_id"),
+                row.getLong("credential_profile", 0L),
+                row.getString("ip"),
+                row.getInteger("port", 0),
+                row.getString("hostname"),
+                row.getString("device_type"));
+    }
+
+    public JsonObject toJson()
+    {
+        return new JsonObject()
+                .put("object_id", objectId)
+                .put("credential_profile", credentialProfile)
+                .put("ip", ip)
+                .put("port", port)
+                .put("hostname", hostname)
+                .put("device_type", deviceType);
+    }
+}
@@ -1,19 +1,26 @@
 package org.example.database;
 
 import io.vertx.core.Future;
+import io.vertx.core.Handler;
 import io.vertx.core.Promise;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.pgclient.PgConnectOptions;
 import io.vertx.pgclient.PgPool;
+import io.vertx.pgclient.pubsub.PgSubscriber;
 import io.vertx.sqlclient.PoolOptions;
 import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.SqlClient;
+import io.vertx.sqlclient.SqlConnection;
 import io.vertx.sqlclient.Tuple;
 import org.example.Constants;
 import org.example.Main;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 public class QueryUtility
 {
@@ -35,15 +42,18 @@ public class QueryUtility
 
     private static final PgPool client;
 
+    private static final PgConnectOptions connectOptions;
+
     static
     {
         // Database connection options
-        PgConnectOptions connectOptions = new PgConnectOptions()
+        connectOptions = new PgConnectOptions()
                 .setPort(Constants.DB_PORT)
                 .setHost(Constants.DB_HOST)
                 .setDatabase(Constants.DB_DATABASE)
                 .setUser(Constants.DB_USER)
-                .setPassword(Constants.DB_PASSWORD);
+                .setPassword(Constants.DB_PASSWORD)
+                .setCachePreparedStatements(true);
 
         // Pool options
         PoolOptions poolOptions = new PoolOptions()
@@ -53,257 +63,306 @@ public class QueryUtility
         client = PgPool.pool(Main.vertx, connectOptions, poolOptions);
     }
 
-    public Future<Long> insert(String tableName, JsonObject data)
+    //SQL text per statement kind, table and column set, so it is built once instead of on every call
+    private final Map<String, String> statements = new ConcurrentHashMap<>();
+
+    //Column sets come from fixed column lists, the bound only keeps a caller that passes request keys through from growing the map
+    private String statement(String key, Function<String, String> builder)
     {
-        var promise = Promise.<Long>promise();
+        var statement = statements.get(key);
 
-        Main.vertx.<Long>executeBlocking(insert->
+        if (statement == null)
         {
-            try
+            statement = builder.apply(key);
+
+            if (statements.size() < Constants.STATEMENT_CACHE_SIZE)
             {
-                var columns = new StringBuilder();
+                statements.put(key, statement);
+            }
+        }
+        return statement;
+    }
 
-                var placeholders = new StringBuilder();
+    //Pg client is non-blocking, so queries are issued straight from the calling event loop
+    public Future<Long> insert(String tableName, JsonObject data)
+    {
+        try
+        {
+            var columns = new ArrayList<>(data.fieldNames());
 
-                var values = new ArrayList<>();
+            var values = new ArrayList<>();
 
-                data.forEach(entry ->
-                {
-                    columns.append(entry.getKey()).append(", ");
-
-                    placeholders.append("$").append(values.size() + 1).append(", ");
-
-                    values.add(entry.getValue());
-                });
-
-                columns.setLength(columns.length() - 2);
-
-                placeholders.setLength(placeholders.length() - 2);
-
-                client.preparedQuery("INSERT INTO " + tableName + " (" + columns + ") VALUES (" + placeholders + ") RETURNING *") //* means every column
-                        .execute(Tuple.from(values), execute -> {
-                            if (execute.succeeded())
-                            {
-                                var rows = execute.result();
-
-                                if (rows.size() > 0)
-                                {
-                                    var id = rows.iterator().next().getLong(0);
-
-                                    insert.complete(id);
-                                }
-                                else
-                                {
-                                    insert.fail("No rows returned");
-                                }
-                            }
-                            else
-                            {
-                                insert.fail(execute.cause().getMessage());
-                            }
-                        });
-            }
-            catch (Exception exception)
+            columns.forEach(column -> values.add(data.getValue(column)));
+
+            return client.preparedQuery(insertStatement(tableName, columns)).execute(Tuple.from(values)).compose(rows ->
             {
-                insert.fail(exception);
-            }
-        },false,result->
+                if (rows.size() > 0)
+                {
+                    return Future.succeededFuture(rows.iterator().next().getLong(0));
+                }
+                return Future.failedFuture("No rows returned");
+            });
+        }
+        catch (Exception exception)
         {
-            if (result.succeeded())
+            return Future.failedFuture(exception);
+        }
+    }
+
+    //Inserts every row with one pipelined batch and returns the generated IDs in the order of the rows
+    public Future<List<Long>> insertBatch(String tableName, List<JsonObject> data)
+    {
+        return insertBatch(client, tableName, data);
+    }
+
+    //Same as above on a given connection, so the batch can be part of a transaction
+    public Future<List<Long>> insertBatch(SqlClient sqlClient, String tableName, List<JsonObject> data)
+    {
+        try
+        {
+            if (data.isEmpty())
             {
-                promise.complete(result.result());
+                return Future.succeededFuture(new ArrayList<>());
             }
-            else
+
+            //Every row is expected to have the columns of the first one
+            var columns = new ArrayList<>(data.getFirst().fieldNames());
+
+            var batch = new ArrayList<Tuple>(data.size());
+
+            for (var row : data)
             {
-                promise.fail(result.cause());
-            }
-        });
+                var values = new ArrayList<>();
 
-        return promise.future();
-    }
+                columns.forEach(column -> values.add(row.getValue(column)));
 
-    public Future<Void> delete(String tableName, String column, Long id)
-    {
-        var promise = Promise.<Void>promise();
+                batch.add(Tuple.from(values));
+            }
 
-        Main.vertx.<Void>executeBlocking(delete ->
-        {
-            try
+            return sqlClient.preparedQuery(insertStatement(tableName, columns)).executeBatch(batch).compose(rows ->
             {
-                String query = "DELETE FROM " + tableName + " WHERE " + column + " = $1";
+                var ids = new ArrayList<Long>(data.size());
 
-                client.preparedQuery(query).execute(Tuple.of(id), execute ->
+                for (var result = rows; result != null; result = result.next())
                 {
-                    if (execute.succeeded())
+                    if (result.size() == 0)
                     {
-                        if (execute.result().rowCount() > 0)
-                        {
-                            delete.complete();
-                        }
-                        else
-                        {
-                            delete.fail("Information not found");
-                        }
+                        return Future.failedFuture("No rows returned");
                     }
-                    else
-                    {
-                        delete.fail(execute.cause());
-                    }
-                });
-            }
-            catch (Exception e)
-            {
-                delete.fail(e);
-            }
-        },false, result ->
+                    ids.add(result.iterator().next().getLong(0));
+                }
+                return Future.succeededFuture(ids);
+            });
+        }
+        catch (Exception exception)
         {
-            if (result.succeeded())
-            {
-                promise.complete();
-            }
-            else
+            return Future.failedFuture(exception);
+        }
+    }
+
+    //Commits if the returned future succeeds, rolls back otherwise
+    public <T> Future<T> transaction(Function<SqlConnection, Future<T>> function)
+    {
+        return client.withTransaction(function);
+    }
+
+    private String insertStatement(String tableName, List<String> columns)
+    {
+        return statement("insert:" + tableName + ":" + columns, key ->
+        {
+            var placeholders = new StringBuilder();
+
+            for (int i = 1; i <= columns.size(); i++)
             {
-                promise.fail(result.cause());
+                placeholders.append(i > 1 ? ", " : "").append("$").append(i);
             }
+
+            return "INSERT INTO " + tableName + " (" + String.join(", ", columns) + ") VALUES (" + placeholders + ") RETURNING *"; //* means every column
         });
-        return promise.future();
     }
 
-    public Future<JsonArray> getAll(String tableName)
+    public Future<Void> delete(String tableName, String column, Long id)
     {
-        var promise = Promise.<JsonArray>promise();
+        try
+        {
+            var query = statement("delete:" + tableName + ":" + column, key ->
+                    "DELETE FROM " + tableName + " WHERE " + column + " = $1");
+
+            return client.preparedQuery(query).execute(Tuple.of(id)).compose(rows ->
+            {
+                if (rows.rowCount() > 0)
+                {
+                    return Future.succeededFuture();
+                }
+                return Future.failedFuture("Information not found");
+            });
+        }
+        catch (Exception exception)
+        {
+            return Future.failedFuture(exception);
+        }
+    }
 
-        Main.vertx.<JsonArray>executeBlocking(getAll ->
+    public Future<JsonArray> getAll(String tableName)
+    {
+        try
         {
-            try
+            var query = statement("select:" + tableName, key -> "SELECT * FROM " + tableName);
+
+            return client.preparedQuery(query).execute().map(rows ->
             {
-                String query = "SELECT * FROM " + tableName;
+                var response = new JsonArray();
 
-                client.preparedQuery(query).execute(execute ->
+                for (Row row : rows)
                 {
-                    if (execute.succeeded())
-                    {
-                        var rows = execute.result();
+                    response.add(toJson(row));
+                }
 
-                        var response = new JsonArray();
+                return response;
+            });
+        }
+        catch (Exception exception)
+        {
+            return Future.failedFuture(exception);
+        }
+    }
 
-                        for (Row row : rows)
-                        {
-                            var json = new JsonObject();
+    //Reads the table through a cursor, fetchSize rows at a time, handing every row over as soon as it arrives
+    public Future<Void> stream(String tableName, int fetchSize, Handler<JsonObject> handler)
+    {
+        try
+        {
+            var query = statement("select:" + tableName, key -> "SELECT * FROM " + tableName);
 
-                            for (int i = 0; i < row.size(); i++)
-                            {
-                                var columnName = row.getColumnName(i);
+            //Cursors only live inside a transaction
+            return client.withTransaction(connection -> connection.prepare(query).compose(statement ->
+            {
+                var promise = Promise.<Void>promise();
 
-                                var value = row.getValue(i);
+                var rows = statement.createStream(fetchSize);
 
-                                json.put(columnName, value);
-                            }
-                            response.add(json);
-                        }
+                rows.exceptionHandler(promise::tryFail);
 
-                        getAll.complete(response);
-                    }
-                    else
-                    {
-                        getAll.fail(execute.cause());
-                    }
-                });
-            }
-            catch (Exception exception)
-            {
-                getAll.fail(exception);
-            }
-        }, false,result ->
+                rows.endHandler(v -> promise.tryComplete());
+
+                rows.handler(row -> handler.handle(toJson(row)));
+
+                return promise.future().onComplete(result -> statement.close());
+            }));
+        }
+        catch (Exception exception)
         {
-            if (result.succeeded())
-            {
-                promise.complete(result.result());
-            }
-            else
-            {
-                promise.fail(result.cause());
-            }
-        });
-        return promise.future();
+            return Future.failedFuture(exception);
+        }
     }
 
-    public Future<Boolean> update(String tableName, JsonObject data, JsonObject filter)
+    private static JsonObject toJson(Row row)
     {
-        var promise = Promise.<Boolean>promise();
+        var json = new JsonObject();
 
-        Main.vertx.<Boolean>executeBlocking(update ->
+        for (int i = 0; i < row.size(); i++)
         {
-            try
+            var columnName = row.getColumnName(i);
+
+            var value = row.getValue(i);
+
+            json.put(columnName, value);
+        }
+        return json;
+    }
+
+    public Future<Boolean> update(String tableName, JsonObject data, JsonObject filter)
+    {
+        try
+        {
+            var setColumns = new ArrayList<>(data.fieldNames());
+
+            var whereColumns = new ArrayList<>(filter.fieldNames());
+
+            var values = new ArrayList<>();
+
+            setColumns.forEach(column -> values.add(data.getValue(column)));
+
+            whereColumns.forEach(column -> values.add(filter.getValue(column)));
+
+            var query = statement("update:" + tableName + ":" + setColumns + ":" + whereColumns, key ->
             {
                 var setClause = new StringBuilder();
 
                 var whereClause = new StringBuilder();
 
-                var values = new ArrayList<>();
+                var index = 0;
 
                 // Construct the SET clause
-                data.forEach(entry ->
+                for (var column : setColumns)
                 {
-                    if (!setClause.isEmpty())
-                    {
-                        setClause.append(", ");
-                    }
-                    setClause.append(entry.getKey()).append(" = $").append(values.size() + 1);
-
-                    values.add(entry.getValue());
-                });
+                    setClause.append(index > 0 ? ", " : "").append(column).append(" = $").append(++index);
+                }
 
                 // Construct the WHERE clause
-                filter.forEach(entry ->
+                for (var column : whereColumns)
                 {
-                    if (!whereClause.isEmpty())
-                    {
-                        whereClause.append(" AND ");
-                    }
-                    whereClause.append(entry.getKey()).append(" = $").append(values.size() + 1);
-
-                    values.add(entry.getValue());
-                });
+                    whereClause.append(whereClause.isEmpty() ? "" : " AND ").append(column).append(" = $").append(++index);
+                }
 
-                // Prepare and execute the query
-                var query = "UPDATE " + tableName + " SET " + setClause + " WHERE " + whereClause;
+                return "UPDATE " + tableName + " SET " + setClause + " WHERE " + whereClause;
+            });
 
-                client.preparedQuery(query).execute(Tuple.from(values), execute ->
-                {
-                    if (execute.succeeded())
-                    {
-                        if (execute.result().rowCount() > 0)
-                        {
-                           update.complete(true); // Update succeeded
-                        }
-                        else
-                        {
-                            update.fail("No matching rows found"); // No rows updated
-                        }
-                    }
-                    else
-                    {
-                        update.fail(execute.cause());
-                    }
-                });
-            }
-            catch (Exception exception)
+            return client.preparedQuery(query).execute(Tuple.from(values)).compose(rows ->
             {
-                update.fail(exception); // Handle any unexpected exceptions
-            }
-        }, false,result ->
+                if (rows.rowCount() > 0)
+                {
+                    return Future.succeededFuture(true); // Update succeeded
+                }
+                return Future.failedFuture("No matching rows found"); // No rows updated
+            });
+        }
+        catch (Exception exception)
         {
-            if (result.succeeded())
-            {
-                promise.complete(result.result());
-            }
-            else
+            return Future.failedFuture(exception); // Handle any unexpected exceptions
+        }
+    }
+
+    //Plain statements such as DDL, sent unprepared so they can hold several commands
+    public Future<Void> execute(String sql)
+    {
+        try
+        {
+            return client.query(sql).execute().mapEmpty();
+        }
+        catch (Exception exception)
+        {
+            return Future.failedFuture(exception);
+        }
+    }
+
+    //Any prepared statement, returns the rows it produced
+    public Future<JsonArray> query(String sql, Tuple parameters)
+    {
+        try
+        {
+            return client.preparedQuery(sql).execute(parameters).map(rows ->
             {
-                promise.fail(result.cause());
-            }
-        });
-        return promise.future();
+                var response = new JsonArray();
+
+                for (Row row : rows)
+                {
+                    response.add(toJson(row));
+                }
+
+                return response;
+            });
+        }
+        catch (Exception exception)
+        {
+            return Future.failedFuture(exception);
+        }
+    }
+
+    //LISTEN needs a connection of its own that stays outside the pool
+    public PgSubscriber subscriber()
+    {
+        return PgSubscriber.subscriber(Main.vertx, connectOptions);
     }
 
     public void closeClient()
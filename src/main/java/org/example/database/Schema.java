@@ -0,0 +1,46 @@
+package org.example.database;
+
+import io.vertx.core.Future;
+import org.example.Constants;
+
+import java.util.List;
+
+//Tables the application creates itself, run once at startup before anything reads or watches them
+public final class Schema
+{
+    private static final List<String> TABLES = List.of(
+
+            "CREATE TABLE IF NOT EXISTS " + Constants.NODES
+                    + " (node_id TEXT PRIMARY KEY, heartbeat TIMESTAMPTZ NOT NULL)",
+
+            "CREATE TABLE IF NOT EXISTS " + Constants.ALERT_RULES + " ("
+                    + "rule_id BIGSERIAL PRIMARY KEY, "
+                    + "rule_name TEXT NOT NULL UNIQUE, "
+                    + "metric_group_name TEXT NOT NULL, "
+                    + "metric TEXT NOT NULL, "
+                    + "rule_type TEXT NOT NULL, "
+                    + "operator TEXT NOT NULL, "
+                    + "threshold DOUBLE PRECISION NOT NULL, "
+                    + "severity TEXT NOT NULL DEFAULT 'Major', "
+                    + "rule_object BIGINT REFERENCES " + Constants.OBJECTS + " (object_id) ON DELETE CASCADE)");
+
+    private Schema()
+    {
+
+    }
+
+    //In order, a table may reference one created before it
+    public static Future<Void> create()
+    {
+        var queryUtility = QueryUtility.getInstance();
+
+        Future<Void> created = Future.succeededFuture();
+
+        for (var table : TABLES)
+        {
+            created = created.compose(v -> queryUtility.execute(table));
+        }
+
+        return created;
+    }
+}
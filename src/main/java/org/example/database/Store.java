@@ -0,0 +1,168 @@
+package org.example.database;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+//In-memory copy of a table keyed by its ID, with secondary indexes that are kept in step on every put and remove
+public class Store<T>
+{
+    private static class Index<T>
+    {
+        private final Function<T, Object> key;
+
+        private final Map<Object, Set<Long>> ids = new ConcurrentHashMap<>();
+
+        //Key each row was indexed under, rows can be changed in place so the old key cannot be read back from the row
+        private final Map<Long, Object> keys = new ConcurrentHashMap<>();
+
+        private Index(Function<T, Object> key)
+        {
+            this.key = key;
+        }
+
+        private void add(Long id, T row)
+        {
+            var newKey = key.apply(row);
+
+            var oldKey = keys.get(id);
+
+            if (Objects.equals(oldKey, newKey) && oldKey != null)
+            {
+                return;
+            }
+
+            remove(id);
+
+            if (newKey != null)
+            {
+                ids.computeIfAbsent(newKey, value -> ConcurrentHashMap.newKeySet()).add(id);
+
+                keys.put(id, newKey);
+            }
+        }
+
+        private void remove(Long id)
+        {
+            var oldKey = keys.remove(id);
+
+            if (oldKey != null)
+            {
+                ids.computeIfPresent(oldKey, (value, set) ->
+                {
+                    set.remove(id);
+
+                    return set.isEmpty() ? null : set;
+                });
+            }
+        }
+    }
+
+    private final Map<Long, T> rows = new ConcurrentHashMap<>();
+
+    private final Map<String, Index<T>> indexes = new HashMap<>();
+
+    //IDs in order, lets a page of rows be read from a cursor without sorting the whole table
+    private final NavigableSet<Long> ids = new ConcurrentSkipListSet<>();
+
+    private volatile long version; //Changes on every put and remove, responses built from the store are tagged with it
+
+    //Indexes are declared once when the store is created, before any row is added
+    public Store<T> index(String name, Function<T, Object> key)
+    {
+        indexes.put(name, new Index<>(key));
+
+        return this;
+    }
+
+    public T get(Long id)
+    {
+        return id == null ? null : rows.get(id);
+    }
+
+    public boolean containsKey(Long id)
+    {
+        return id != null && rows.containsKey(id);
+    }
+
+    public long version()
+    {
+        return version;
+    }
+
+    public boolean isEmpty()
+    {
+        return rows.isEmpty();
+    }
+
+    public int size()
+    {
+        return rows.size();
+    }
+
+    public Collection<T> values()
+    {
+        return Collections.unmodifiableCollection(rows.values());
+    }
+
+    public Set<Map.Entry<Long, T>> entrySet()
+    {
+        return Collections.unmodifiableMap(rows).entrySet();
+    }
+
+    public void forEach(BiConsumer<Long, T> action)
+    {
+        rows.forEach(action);
+    }
+
+    //Also used after a row was changed in place, so its indexes catch up
+    public synchronized void put(Long id, T row)
+    {
+        rows.put(id, row);
+
+        ids.add(id);
+
+        version++;
+
+        indexes.values().forEach(index -> index.add(id, row));
+    }
+
+    public synchronized T remove(Long id)
+    {
+        indexes.values().forEach(index -> index.remove(id));
+
+        ids.remove(id);
+
+        version++;
+
+        return rows.remove(id);
+    }
+
+    //IDs in ascending order starting after cursor, or from the first ID when cursor is null
+    public Iterator<Long> idsAfter(Long cursor)
+    {
+        return cursor == null ? ids.iterator() : ids.tailSet(cursor, false).iterator();
+    }
+
+    //IDs of the rows whose indexed value equals key
+    public Set<Long> find(String index, Object key)
+    {
+        var ids = indexes.get(index).ids.get(key);
+
+        return ids == null ? Set.of() : Collections.unmodifiableSet(ids);
+    }
+
+    public boolean contains(String index, Object key)
+    {
+        return !find(index, key).isEmpty();
+    }
+}
@@ -0,0 +1,111 @@
+package org.example.poll;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.sqlclient.Tuple;
+import org.example.Constants;
+import org.example.database.QueryUtility;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//Node membership through a lease table, every live node renews its row and metrics are split between them on a hash ring
+public class Cluster extends AbstractVerticle
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(Cluster.class);
+
+    private static volatile HashRing ring = new HashRing(List.of(), 0);
+
+    private List<String> members = List.of();
+
+    private long lastHeartbeat;
+
+    //Every node schedules every metric, only the owner sends the poll, so ownership can move without rescheduling anything
+    public static boolean owns(long metricId)
+    {
+        return !Constants.CLUSTER_MODE || Constants.NODE_ID.equals(ring.node(metricId));
+    }
+
+    @Override
+    public void start(Promise<Void> startPromise)
+    {
+        try
+        {
+            heartbeat()
+
+                    .onSuccess(v -> vertx.setPeriodic(Constants.NODE_HEARTBEAT_INTERVAL, id -> heartbeat()))
+
+                    .onComplete(startPromise);
+        }
+        catch (Exception exception)
+        {
+            LOGGER.error("Failed to join cluster: {}", exception.getMessage(), exception);
+
+            startPromise.fail(exception);
+        }
+    }
+
+    //Lease times are compared on the database clock, so the clocks of the nodes do not have to agree
+    private Future<Void> heartbeat()
+    {
+        var queryUtility = QueryUtility.getInstance();
+
+        return queryUtility.query("INSERT INTO " + Constants.NODES + " (node_id, heartbeat) VALUES ($1, now())"
+                        + " ON CONFLICT (node_id) DO UPDATE SET heartbeat = now()", Tuple.of(Constants.NODE_ID))
+
+                .compose(v -> queryUtility.query("SELECT node_id FROM " + Constants.NODES
+                        + " WHERE heartbeat > now() - $1 * interval '1 millisecond' ORDER BY node_id", Tuple.of(Constants.NODE_LEASE_TIMEOUT)))
+
+                .onSuccess(rows ->
+                {
+                    lastHeartbeat = System.currentTimeMillis();
+
+                    var nodes = new ArrayList<String>();
+
+                    for (int i = 0; i < rows.size(); i++)
+                    {
+                        nodes.add(rows.getJsonObject(i).getString("node_id"));
+                    }
+
+                    if (!nodes.equals(members))
+                    {
+                        members = nodes;
+
+                        ring = new HashRing(nodes, Constants.VIRTUAL_NODES);
+
+                        LOGGER.info("Cluster members changed, now polling with {}", nodes);
+                    }
+                })
+
+                .onFailure(error ->
+                {
+                    LOGGER.error("Heartbeat failed: {}", error.getMessage());
+
+                    //Other nodes consider our lease expired by now and have taken our metrics over
+                    if (!members.isEmpty() && System.currentTimeMillis() - lastHeartbeat >= Constants.NODE_LEASE_TIMEOUT)
+                    {
+                        members = List.of();
+
+                        ring = new HashRing(members, 0);
+
+                        LOGGER.warn("Lease expired, polling stopped until the database is reachable again");
+                    }
+                })
+
+                .mapEmpty();
+    }
+
+    //Leaving explicitly hands the metrics over right away instead of after the lease timeout
+    @Override
+    public void stop(Promise<Void> stopPromise)
+    {
+        ring = new HashRing(List.of(), 0);
+
+        QueryUtility.getInstance().query("DELETE FROM " + Constants.NODES + " WHERE node_id = $1", Tuple.of(Constants.NODE_ID))
+                .<Void>mapEmpty()
+                .onComplete(stopPromise);
+    }
+}
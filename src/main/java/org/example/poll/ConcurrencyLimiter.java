@@ -0,0 +1,100 @@
+package org.example.poll;
+
+import io.vertx.core.Future;
+import org.example.Constants;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+//AIMD concurrency limit per lane, a lane of slow or unreachable devices shrinks its own share of the polling threads
+//Only used from the event loop of its Poller, so it needs no locking
+public class ConcurrencyLimiter
+{
+    private class Lane
+    {
+        private double limit = initialLimit;
+
+        private int inFlight;
+
+        private final Deque<Supplier<Future<Long>>> queue = new ArrayDeque<>();
+    }
+
+    private final Map<String, Lane> lanes = new HashMap<>();
+
+    private final double initialLimit;
+
+    private final int maxLimit;
+
+    private final int queueSize;
+
+    //Every Poller instance has a limiter of its own and gets about 1/instances of each lane's polls, so each takes that share of the limits
+    public ConcurrencyLimiter(int instances)
+    {
+        initialLimit = Math.max(1, Constants.LIMITER_INITIAL_LIMIT / instances);
+
+        maxLimit = Math.max(1, Constants.POLL_LIMIT_MAX / instances);
+
+        queueSize = Math.max(1, Constants.LIMITER_QUEUE_SIZE / instances);
+    }
+
+    //Task completes with the time the plugin took, returns false if the lane is full and the task is shed
+    public boolean submit(String name, Supplier<Future<Long>> task)
+    {
+        var lane = lanes.computeIfAbsent(name, key -> new Lane());
+
+        if (lane.inFlight < (int) lane.limit)
+        {
+            run(lane, task);
+
+            return true;
+        }
+
+        if (lane.queue.size() >= queueSize)
+        {
+            return false;
+        }
+
+        lane.queue.add(task);
+
+        return true;
+    }
+
+    private void run(Lane lane, Supplier<Future<Long>> task)
+    {
+        lane.inFlight++;
+
+        Future<Long> result;
+
+        try
+        {
+            result = task.get();
+        }
+        catch (Exception exception)
+        {
+            result = Future.failedFuture(exception);
+        }
+
+        result.onComplete(latency ->
+        {
+            lane.inFlight--;
+
+            if (latency.succeeded() && latency.result() <= Constants.LIMITER_LATENCY_THRESHOLD)
+            {
+                //Grows by about one per limit's worth of good polls
+                lane.limit = Math.min(maxLimit, lane.limit + 1 / lane.limit);
+            }
+            else
+            {
+                lane.limit = Math.max(1, lane.limit / 2);
+            }
+
+            while (!lane.queue.isEmpty() && lane.inFlight < (int) lane.limit)
+            {
+                run(lane, lane.queue.poll());
+            }
+        });
+    }
+}
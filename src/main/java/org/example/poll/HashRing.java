@@ -0,0 +1,76 @@
+package org.example.poll;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.TreeMap;
+
+//Consistent hash ring, a node leaving or joining only moves the metrics next to its points on the ring
+public class HashRing
+{
+    private final TreeMap<Long, String> points = new TreeMap<>();
+
+    public HashRing(Collection<String> nodes, int virtualNodes)
+    {
+        try
+        {
+            var digest = MessageDigest.getInstance("MD5");
+
+            for (var node : nodes)
+            {
+                //Several points per node, so the ranges each node owns even out
+                for (int i = 0; i < virtualNodes; i++)
+                {
+                    var hash = digest.digest((node + "#" + i).getBytes(StandardCharsets.UTF_8));
+
+                    var point = 0L;
+
+                    for (int j = 0; j < 8; j++)
+                    {
+                        point = (point << 8) | (hash[j] & 0xFF);
+                    }
+
+                    points.put(point, node);
+                }
+            }
+        }
+        catch (Exception exception)
+        {
+            throw new IllegalStateException("MD5 is not available", exception);
+        }
+    }
+
+    public boolean isEmpty()
+    {
+        return points.isEmpty();
+    }
+
+    //First node clockwise from the hash of the key
+    public String node(long key)
+    {
+        if (points.isEmpty())
+        {
+            return null;
+        }
+
+        var entry = points.ceilingEntry(mix(key));
+
+        return entry != null ? entry.getValue() : points.firstEntry().getValue();
+    }
+
+    //Murmur3 finalizer, consecutive IDs land far apart on the ring
+    static long mix(long key)
+    {
+        key ^= key >>> 33;
+
+        key *= 0xff51afd7ed558ccdL;
+
+        key ^= key >>> 33;
+
+        key *= 0xc4ceb93fe53d2d3bL;
+
+        key ^= key >>> 33;
+
+        return key;
+    }
+}
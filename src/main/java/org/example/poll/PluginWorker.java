@@ -0,0 +1,108 @@
+package org.example.poll;
+
+import io.vertx.core.json.JsonObject;
+import org.example.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+//One resident plugin process, requests and responses are framed as single JSON lines over stdin/stdout
+public class PluginWorker
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(PluginWorker.class);
+
+    private final int id;
+
+    private Process process;
+
+    private BufferedWriter writer;
+
+    private LinkedBlockingQueue<String> responses;
+
+    public PluginWorker(int id)
+    {
+        this.id = id;
+    }
+
+    public void start() throws IOException
+    {
+        process = new ProcessBuilder(Constants.PLUGIN_PATH, Constants.PLUGIN_WORKER_FLAG)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+
+        writer = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+
+        responses = new LinkedBlockingQueue<>();
+
+        var reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+
+        var queue = responses;
+
+        //Reader thread hands every response line over to the caller waiting in request()
+        Thread.ofPlatform().daemon().name("plugin-worker-" + id).start(() ->
+        {
+            try
+            {
+                for (var line = reader.readLine(); line != null; line = reader.readLine())
+                {
+                    queue.offer(line);
+                }
+            }
+            catch (IOException exception)
+            {
+                LOGGER.warn("Plugin worker {} stopped reading: {}", id, exception.getMessage());
+            }
+        });
+
+        LOGGER.info("Plugin worker {} started with pid {}", id, process.pid());
+    }
+
+    public boolean isAlive()
+    {
+        return process != null && process.isAlive();
+    }
+
+    public JsonObject request(JsonObject request, long timeout) throws Exception
+    {
+        writer.write(request.encode());
+
+        writer.newLine();
+
+        writer.flush();
+
+        var response = responses.poll(timeout, TimeUnit.MILLISECONDS);
+
+        if (response == null)
+        {
+            throw new TimeoutException("Plugin worker " + id + " did not respond within " + timeout + " ms");
+        }
+
+        return new JsonObject(response.trim());
+    }
+
+    public void restart() throws IOException
+    {
+        destroy();
+
+        start();
+    }
+
+    public void destroy()
+    {
+        if (process != null)
+        {
+            process.destroyForcibly();
+
+            process = null;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package org.example.poll;
+
+import io.vertx.core.json.JsonObject;
+import org.example.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+//Keeps Constants.PLUGIN_WORKERS plugin processes resident so that a poll does not pay for fork/exec every time
+public class PluginWorkerPool
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(PluginWorkerPool.class);
+
+    private static PluginWorkerPool instance;
+
+    private final BlockingQueue<PluginWorker> idle = new ArrayBlockingQueue<>(Math.max(1, Constants.PLUGIN_WORKERS));
+
+    private PluginWorkerPool()
+    {
+        for (int i = 0; i < Constants.PLUGIN_WORKERS; i++)
+        {
+            var worker = new PluginWorker(i);
+
+            try
+            {
+                worker.start();
+            }
+            catch (Exception exception)
+            {
+                //Worker will be started again when it is borrowed or health checked
+                LOGGER.error("Failed to start plugin worker {}: {}", i, exception.getMessage());
+            }
+
+            idle.add(worker);
+        }
+    }
+
+    public static synchronized PluginWorkerPool getInstance()
+    {
+        if (instance == null)
+        {
+            instance = new PluginWorkerPool();
+        }
+        return instance;
+    }
+
+    public static boolean isEnabled()
+    {
+        return Constants.PLUGIN_WORKERS > 0;
+    }
+
+    public JsonObject execute(JsonObject request) throws Exception
+    {
+        var worker = idle.poll(Constants.PLUGIN_TIMEOUT, TimeUnit.MILLISECONDS);
+
+        if (worker == null)
+        {
+            throw new TimeoutException("No plugin worker became free within " + Constants.PLUGIN_TIMEOUT + " ms");
+        }
+
+        try
+        {
+            if (!worker.isAlive())
+            {
+                LOGGER.warn("Plugin worker crashed, restarting it");
+
+                worker.restart();
+            }
+
+            return worker.request(request, Constants.PLUGIN_TIMEOUT);
+        }
+        catch (Exception exception)
+        {
+            //A timed out or broken worker may still answer later, so it is replaced instead of being reused
+            restartQuietly(worker);
+
+            throw exception;
+        }
+        finally
+        {
+            idle.add(worker);
+        }
+    }
+
+    //Pings every idle worker, busy workers are covered by their own request timeout
+    public void healthCheck()
+    {
+        for (int i = idle.size(); i > 0; i--)
+        {
+            var worker = idle.poll();
+
+            if (worker == null)
+            {
+                return;
+            }
+
+            try
+            {
+                if (!worker.isAlive())
+                {
+                    LOGGER.warn("Plugin worker found dead during health check, restarting it");
+
+                    worker.restart();
+                }
+                else
+                {
+                    worker.request(new JsonObject().put(Constants.EVENT_TYPE, Constants.HEALTH), Constants.PLUGIN_HEALTH_TIMEOUT);
+                }
+            }
+            catch (Exception exception)
+            {
+                LOGGER.warn("Plugin worker failed health check: {}", exception.getMessage());
+
+                restartQuietly(worker);
+            }
+            finally
+            {
+                idle.add(worker);
+            }
+        }
+    }
+
+    public void close()
+    {
+        idle.forEach(PluginWorker::destroy);
+    }
+
+    private void restartQuietly(PluginWorker worker)
+    {
+        try
+        {
+            worker.restart();
+        }
+        catch (Exception exception)
+        {
+            LOGGER.error("Failed to restart plugin worker: {}", exception.getMessage());
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.example.poll;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.example.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.example.Main.credentials;
+
+//Groups polls that come due together by protocol and metric group, so Poller can run one plugin request per group
+public class PollBatcher extends AbstractVerticle
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(PollBatcher.class);
+
+    private final Map<String, JsonArray> batches = new HashMap<>();
+
+    private final Map<String, Long> timers = new HashMap<>();
+
+    public void start()
+    {
+        try
+        {
+            vertx.eventBus().<JsonObject>localConsumer(Constants.OBJECT_POLL, message ->
+            {
+                var pollingData = message.body();
+
+                var credential = credentials.get(pollingData.getLong("credential.profile"));
+
+                if (credential == null)
+                {
+                    LOGGER.warn("No credential profile found for ip: {}", pollingData.getString("ip"));
+
+                    return;
+                }
+
+                //Coalesced polls are only batched with targets that collect the same groups
+                var key = credential.profileProtocol() + "|" + (pollingData.containsKey("metric.groups")
+                        ? pollingData.getJsonArray("metric.groups").encode()
+                        : pollingData.getString("metric.group.name"));
+
+                var batch = batches.get(key);
+
+                if (batch == null)
+                {
+                    batch = new JsonArray();
+
+                    batches.put(key, batch);
+
+                    //First target of a batch decides when it is flushed
+                    timers.put(key, vertx.setTimer(Constants.POLL_BATCH_WINDOW, id -> flush(key)));
+                }
+
+                batch.add(pollingData);
+
+                if (batch.size() >= Constants.POLL_BATCH_SIZE)
+                {
+                    flush(key);
+                }
+            });
+        }
+        catch (Exception exception)
+        {
+            LOGGER.error(exception.getMessage(), exception);
+        }
+    }
+
+    private void flush(String key)
+    {
+        var batch = batches.remove(key);
+
+        var timer = timers.remove(key);
+
+        if (timer != null)
+        {
+            vertx.cancelTimer(timer);
+        }
+
+        if (batch == null || batch.isEmpty())
+        {
+            return;
+        }
+
+        var first = batch.getJsonObject(0);
+
+        var message = new JsonObject().put("targets", batch);
+
+        if (first.containsKey("metric.groups"))
+        {
+            message.put("metric.groups", first.getJsonArray("metric.groups"));
+        }
+        else
+        {
+            message.put("metric.group.name", first.getString("metric.group.name"));
+        }
+
+        vertx.eventBus().send(Constants.OBJECT_POLL_BATCH, message);
+    }
+}
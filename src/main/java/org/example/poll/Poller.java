@@ -1,11 +1,14 @@
 package org.example.poll;
 import io.vertx.core.AbstractVerticle;
-import io.vertx.core.WorkerExecutor;
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import org.example.Constants;
-import org.example.Main;
+import org.example.util.BlockingExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import static org.example.Main.credentials;
@@ -14,37 +17,93 @@ public class Poller extends AbstractVerticle
 {
     private static final Logger LOGGER = LoggerFactory.getLogger(Poller.class);
 
-    private static final WorkerExecutor poll = Main.vertx.createSharedWorkerExecutor("polling",20,60, TimeUnit.SECONDS);
+    private static final BlockingExecutor poll = BlockingExecutor.create("polling",Constants.POLL_THREADS);
+
+    //Lanes are device types, so unreachable devices of one type do not hold back the others
+    private final ConcurrencyLimiter limiter = new ConcurrencyLimiter(Constants.POLLER_INSTANCES);
+
+    private final int instance;
+
+    public Poller(int instance)
+    {
+        this.instance = instance;
+    }
 
     public void start()
     {
         try
         {
-            vertx.eventBus().<JsonObject>localConsumer(Constants.OBJECT_POLL, message ->
+            vertx.eventBus().<JsonObject>localConsumer(Constants.OBJECT_POLL_BATCH, message ->
             {
-                var pollingData = message.body();
+                var targets = message.body().getJsonArray("targets");
+
+                var metricIds = new JsonArray();
+
+                for (int i = 0; i < targets.size(); i++)
+                {
+                    var target = targets.getJsonObject(i);
+
+                    if (target.containsKey("metric.ids"))
+                    {
+                        metricIds.addAll((JsonArray) target.remove("metric.ids"));
+                    }
+                    else
+                    {
+                        metricIds.add(target.remove("metric.id"));
+                    }
+                }
+
+                var lane = targets.getJsonObject(0).getString("device_type");
+
+                var accepted = limiter.submit(lane, () ->
+                {
+                    if (targets.size() == 1)
+                    {
+                        var pollingData = targets.getJsonObject(0);
+
+                        var timestamp = prepareTarget(pollingData);
+
+                        return startPoll(pollingData,timestamp);
+                    }
 
-                //Fetching credentials of qualified devices
-                var credential = credentials.get(pollingData.getLong("credential.profile"));
+                    var timestamps = new HashMap<String, String>();
 
-                //Fetching device details through credential profile ID as that details will also be needed
+                    for (int i = 0; i < targets.size(); i++)
+                    {
+                        var pollingData = targets.getJsonObject(i);
 
-                pollingData.put("profile.protocol",credential.getString("profile_protocol"))
-                        .put("user.name",credential.getString("user_name"))
-                        .put("user.password",credential.getString("user_password"))
-                        .put("community",credential.getString("community"))
-                        .put("version",credential.getString("version"));
+                        timestamps.put(pollingData.getString("ip"), prepareTarget(pollingData));
+                    }
 
-                var timestamp = pollingData.getString("timestamp");
+                    var groups = groupsOf(message.body());
 
-                //As I don't require these 2 values in plugin , so I am separately passing the timestamp
+                    return startBatchPoll(groups, targets, timestamps);
+                });
 
-                pollingData.remove("credential.profile");
+                if (!accepted)
+                {
+                    LOGGER.warn("Lane {} is full, deferring {} polls", lane, metricIds.size());
 
-                pollingData.remove("timestamp");
+                    SchedulingLag.deferred(metricIds.size());
 
-                startPoll(pollingData,timestamp);
+                    vertx.eventBus().publish(Constants.POLL_DEFERRED, metricIds);
+                }
             });
+
+            //Plugin worker pool is shared by every instance, the first one looks after it
+            if (PluginWorkerPool.isEnabled() && instance == 0)
+            {
+                //Workers are started here so the first polls do not wait for process startup
+                poll.execute(PluginWorkerPool::getInstance);
+
+                vertx.setPeriodic(Constants.PLUGIN_HEALTH_INTERVAL, id ->
+                        poll.execute(() ->
+                        {
+                            PluginWorkerPool.getInstance().healthCheck();
+
+                            return null;
+                        }));
+            }
         }
         catch (Exception exception)
         {
@@ -52,60 +111,166 @@ public class Poller extends AbstractVerticle
         }
     }
 
-    private void startPoll(JsonObject pollingData, String timestamp)
+    //Adds credentials of the device to the polling data and returns the timestamp of the poll
+    private String prepareTarget(JsonObject pollingData)
+    {
+        //Fetching credentials of qualified devices
+        var credential = credentials.get(pollingData.getLong("credential.profile"));
+
+        //Fetching device details through credential profile ID as that details will also be needed
+
+        pollingData.put("profile.protocol",credential.profileProtocol())
+                .put("user.name",credential.userName())
+                .put("user.password",credential.userPassword())
+                .put("community",credential.community())
+                .put("version",credential.version());
+
+        var timestamp = pollingData.getString("timestamp");
+
+        //As I don't require these 2 values in plugin , so I am separately passing the timestamp
+
+        pollingData.remove("credential.profile");
+
+        pollingData.remove("timestamp");
+
+        return timestamp;
+    }
+
+    //Completes with the time the plugin took
+    private Future<Long> startPoll(JsonObject pollingData, String timestamp)
     {
         LOGGER.info("Started polling of ip: {}",pollingData.getString("ip"));
 
-        poll.executeBlocking(promise ->
+        return poll.execute(() ->
         {
+            var start = System.currentTimeMillis();
+
             try
             {
                 pollingData.put(Constants.EVENT_TYPE, Constants.POLL);
 
-                Process process = new ProcessBuilder(Constants.PLUGIN_PATH, pollingData.encode())
-                        .redirectErrorStream(true).start();
+                var result = PluginWorkerPool.isEnabled()
+                        ? PluginWorkerPool.getInstance().execute(pollingData)
+                        : spawnPlugin(pollingData);
 
-                // Capture output from the Go executable
-                var output = new String(process.getInputStream().readAllBytes());
+                deliver(new JsonObject()
+                        .put("metrics", result)
+                        .put("timestamp", timestamp)
+                        .mergeIn(groupsOf(pollingData)));
+                return System.currentTimeMillis() - start;
+            }
+            catch (Exception exception)
+            {
+                LOGGER.error("Failed to execute Go executable", exception);
 
-                if (process.waitFor(60, TimeUnit.SECONDS))
-                {
-                    if (process.exitValue() == 0)
-                    {
-                        var result = new JsonObject(output.trim());
-
-                        vertx.eventBus().send(
-                                Constants.FILE_WRITE,
-                                new JsonObject()
-                                        .put("metrics", result)
-                                        .put("timestamp", timestamp)
-                        );
-                        promise.complete(result);
-                    }
-                    else
-                    {
-                        promise.fail("Polling failed: " + output.trim());
-                    }
-                }
-                else
+                throw exception;
+            }
+        }).onFailure(error -> LOGGER.error("Polling failed for IP: {}", pollingData.getString("ip")));
+    }
+
+    //One plugin request for all targets of a batch, only used when poll.batch.size is above 1
+    //Plugin contract: the request is {"event.type":"poll", <groups>, "targets":[<poll of one target>, ...]} and the plugin
+    //answers {"results":[{"ip":..., "result":{...}}, ...]} with at most one entry per target, matched back by ip,
+    //a target missing from results is not written. A plugin without batch support must be polled with poll.batch.size=1
+    //groups holds either metric.group.name or, for coalesced polls, metric.groups whose results come back keyed by group name
+    private Future<Long> startBatchPoll(JsonObject groups, JsonArray targets, Map<String, String> timestamps)
+    {
+        LOGGER.info("Started batch polling of {} targets for {}", targets.size(), groups);
+
+        return poll.execute(() ->
+        {
+            var start = System.currentTimeMillis();
+
+            try
+            {
+                var request = groups.copy()
+                        .put(Constants.EVENT_TYPE, Constants.POLL)
+                        .put("targets", targets);
+
+                var response = PluginWorkerPool.isEnabled()
+                        ? PluginWorkerPool.getInstance().execute(request)
+                        : spawnPlugin(request);
+
+                var results = response.getJsonArray("results");
+
+                for (int i = 0; i < results.size(); i++)
                 {
-                    promise.fail("Polling timed out");
+                    var result = results.getJsonObject(i);
+
+                    deliver(new JsonObject()
+                            .put("metrics", result)
+                            .put("timestamp", timestamps.get(result.getString("ip")))
+                            .mergeIn(groups));
                 }
-                process.destroy();
+                return System.currentTimeMillis() - start;
             }
             catch (Exception exception)
             {
                 LOGGER.error("Failed to execute Go executable", exception);
 
-                promise.fail(exception);
+                throw exception;
             }
-        }, false, result ->
+        }).onFailure(error -> LOGGER.error("Batch polling failed for {} targets of {}", targets.size(), groups));
+    }
+
+    //FileWriter gets every result once, the metric store and the alert engine each get their own copy
+    private void deliver(JsonObject result)
+    {
+        vertx.eventBus().send(Constants.FILE_WRITE, result);
+
+        vertx.eventBus().publish(Constants.POLL_RESULT, result);
+    }
+
+    //Metric group fields of a poll, results carry them so the metric store knows what it is storing
+    private static JsonObject groupsOf(JsonObject pollingData)
+    {
+        var groups = new JsonObject();
+
+        for (var field : new String[]{"metric.group.name", "metric.groups"})
         {
-            if (result.failed())
+            if (pollingData.containsKey(field))
             {
-                LOGGER.error("Polling failed for IP: {}", pollingData.getString("ip"));
+                groups.put(field, pollingData.getValue(field));
             }
-        });
+        }
+        return groups;
     }
 
+    //One process per poll, used when no resident plugin workers are configured
+    private JsonObject spawnPlugin(JsonObject pollingData) throws Exception
+    {
+        Process process = new ProcessBuilder(Constants.PLUGIN_PATH, pollingData.encode())
+                .redirectErrorStream(true).start();
+
+        try
+        {
+            // Capture output from the Go executable
+            var output = new String(process.getInputStream().readAllBytes());
+
+            if (!process.waitFor(Constants.PLUGIN_TIMEOUT, TimeUnit.MILLISECONDS))
+            {
+                throw new IllegalStateException("Polling timed out");
+            }
+
+            if (process.exitValue() != 0)
+            {
+                throw new IllegalStateException("Polling failed: " + output.trim());
+            }
+
+            return new JsonObject(output.trim());
+        }
+        finally
+        {
+            process.destroy();
+        }
+    }
+
+    @Override
+    public void stop()
+    {
+        if (PluginWorkerPool.isEnabled() && instance == 0)
+        {
+            PluginWorkerPool.getInstance().close();
+        }
+    }
 }
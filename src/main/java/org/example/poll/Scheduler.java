@@ -3,23 +3,61 @@ package org.example.poll;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import org.example.Constants;
+import org.example.database.MetricRow;
+import org.example.database.ObjectRow;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 
+import static org.example.Main.credentials;
 import static org.example.Main.metrics;
 import static org.example.Main.objects;
+import static org.example.Main.tablesLoaded;
 
 public class Scheduler extends AbstractVerticle
 {
     private static final Logger LOGGER = LoggerFactory.getLogger(Scheduler.class);
 
+    private record PollTask(long metricId, long due)
+    {
+
+    }
+
     private final Map<Long,Long> pollDevices = new HashMap<>(); //This map will contain metric_id and the next polling time
 
+    //Min-heap on next polling time, entries whose time no longer matches pollDevices are stale and skipped
+    private final PriorityQueue<PollTask> pollQueue = new PriorityQueue<>(Comparator.comparingLong(PollTask::due));
+
+    private final int instance;
+
+    private final int instances;
+
+    public Scheduler(int instance, int instances)
+    {
+        this.instance = instance;
+
+        this.instances = instances;
+    }
+
+    //Scheduling events are published to every instance, each one keeps only its own partition of the metrics
+    private boolean isMine(long metricId)
+    {
+        return Math.floorMod(partitionKey(metricId), instances) == instance;
+    }
+
+    //Coalesced metrics of one object have to be scheduled by the same instance and node
+    private long partitionKey(long metricId)
+    {
+        var metricData = Constants.POLL_COALESCE ? metrics.get(metricId) : null;
+
+        return metricData != null ? metricData.metricObject() : metricId;
+    }
+
     public void start()
     {
         try
@@ -27,11 +65,46 @@ public class Scheduler extends AbstractVerticle
             //If device is provisioned after I have fetched provisioned devices from database
             vertx.eventBus().<JsonObject>localConsumer(Constants.OBJECT_PROVISION, object->
             {
-                for(var entry : metrics.entrySet())
+                for(var metricId : metrics.find("metric_object", object.body().getLong("object_id")))
                 {
-                    if(Objects.equals(entry.getValue().getLong("metric_object"), object.body().getLong("object_id")))
+                    if(!isMine(metricId))
                     {
-                        pollDevices.put(entry.getKey(), System.currentTimeMillis()+entry.getValue().getInteger("metric_poll_time")*1000L);
+                        continue;
+                    }
+                    schedule(metricId, firstDue(metricId, metrics.get(metricId).metricPollTime()*1000L, System.currentTimeMillis()));
+                }
+            });
+
+            //Metrics loaded from the database at startup or created by another node, already scheduled ones keep their time
+            vertx.eventBus().<JsonArray>localConsumer(Constants.METRIC_SCHEDULE, message ->
+            {
+                var currentTime = System.currentTimeMillis();
+
+                for(var value : message.body())
+                {
+                    var metricId = ((Number) value).longValue();
+
+                    var metricData = metrics.get(metricId);
+
+                    if(metricData != null && isMine(metricId) && !pollDevices.containsKey(metricId))
+                    {
+                        schedule(metricId, firstDue(metricId, metricData.metricPollTime()*1000L, currentTime));
+                    }
+                }
+            });
+
+            //Poller shed these polls, their next poll is pushed back so the overloaded lane gets time to drain
+            vertx.eventBus().<JsonArray>localConsumer(Constants.POLL_DEFERRED, message ->
+            {
+                for(var value : message.body())
+                {
+                    var metricId = ((Number) value).longValue();
+
+                    var due = pollDevices.get(metricId);
+
+                    if(due != null && isMine(metricId))
+                    {
+                        schedule(metricId, due+Constants.POLL_DEFER_DELAY);
                     }
                 }
             });
@@ -39,7 +112,7 @@ public class Scheduler extends AbstractVerticle
             //Will fetch provisioned devices from database as soon as this verticle deploys
             getDevices()
                     .onComplete(v->
-                            vertx.setPeriodic(Constants.PERIODIC_INTERVAL,id-> checkAndPreparePolling()));
+                            vertx.setPeriodic(Constants.SCHEDULER_TICK,id-> checkAndPreparePolling()));
         }
         catch (Exception exception)
         {
@@ -56,7 +129,11 @@ public class Scheduler extends AbstractVerticle
         {
             for(var entry : metrics.entrySet())
             {
-                pollDevices.put(entry.getKey(), System.currentTimeMillis()+entry.getValue().getInteger("metric_poll_time")*1000L);
+                if(!isMine(entry.getKey()))
+                {
+                    continue;
+                }
+                schedule(entry.getKey(), firstDue(entry.getKey(), entry.getValue().metricPollTime()*1000L, System.currentTimeMillis()));
             }
             promise.complete();
         }
@@ -69,41 +146,156 @@ public class Scheduler extends AbstractVerticle
         return promise.future();
     }
 
+    //Every metric gets a fixed phase within its interval from the hash of its partition key, so metrics with the same interval
+    //do not all come due on the same tick after a restart, and the phase stays the same across restarts and nodes
+    private long firstDue(long metricId, long interval, long currentTime)
+    {
+        var phase = Math.floorMod(HashRing.mix(partitionKey(metricId)), interval);
+
+        var jitter = ThreadLocalRandom.current().nextLong(Math.max(1, Math.min(Constants.SCHEDULE_JITTER, interval/10)));
+
+        var due = currentTime - Math.floorMod(currentTime, interval) + phase + jitter;
+
+        return due > currentTime ? due : due+interval;
+    }
+
+    private void schedule(long metricId, long due)
+    {
+        pollDevices.put(metricId, due);
+
+        pollQueue.add(new PollTask(metricId, due));
+    }
+
+    //Only touches entries that are due, so the cost of a tick does not grow with the number of metrics
     private void checkAndPreparePolling()
     {
-        if(pollDevices.isEmpty())
+        var currentTime = System.currentTimeMillis();
+
+        while(!pollQueue.isEmpty() && pollQueue.peek().due() <= currentTime)
         {
-            LOGGER.info("No provisioned devices currently");
+            var task = pollQueue.poll();
 
-            return;
-        }
+            var due = pollDevices.get(task.metricId());
 
-        var currentTime = System.currentTimeMillis();
+            if(due == null || due != task.due())
+            {
+                continue;
+            }
+
+            var metricData = metrics.get(task.metricId());
+
+            if(metricData == null)
+            {
+                pollDevices.remove(task.metricId());
+
+                continue;
+            }
+
+            var interval = metricData.metricPollTime()*1000L;
+
+            var next = task.due()+interval;
+
+            //If we fell behind by more than one interval, do not fire the missed polls back to back
+            next = next > currentTime ? next : currentTime+interval;
+
+            //Owned by another node, kept on schedule in case it comes to this one
+            if(!Cluster.owns(partitionKey(task.metricId())))
+            {
+                schedule(task.metricId(), next);
+
+                continue;
+            }
+
+            var objectData = objects.get(metricData.metricObject());
+
+            //Object or its credential profile may not be loaded yet during startup, try again on a later tick
+            //Once the tables are loaded it is really missing, checked again on the metric's own schedule so its phase is kept
+            if(objectData == null || !credentials.containsKey(objectData.credentialProfile()))
+            {
+                schedule(task.metricId(), tablesLoaded ? next : currentTime+Constants.SCHEDULER_TICK);
+
+                continue;
+            }
+
+            SchedulingLag.record(currentTime - task.due());
+
+            var group = new ArrayList<MetricRow>();
+
+            group.add(metricData);
+
+            if(Constants.POLL_COALESCE)
+            {
+                coalesce(metricData, group, currentTime);
+            }
 
-        for(var entry : pollDevices.entrySet())
+            preparePolling(objectData,group,currentTime);
+
+            schedule(task.metricId(), next);
+        }
+    }
+
+    //Pulls in the other metric groups of the object that are due soon, they are polled now and rescheduled from this tick,
+    //so after a few rounds the groups of an object come due together
+    private void coalesce(MetricRow metricData, List<MetricRow> group, long currentTime)
+    {
+        for(var siblingId : metrics.find("metric_object", metricData.metricObject()))
         {
-            if(currentTime >= entry.getValue())
+            var sibling = metrics.get(siblingId);
+
+            var due = pollDevices.get(siblingId);
+
+            if(sibling == null || due == null || siblingId == metricData.metricId())
+            {
+                continue;
+            }
+
+            var interval = sibling.metricPollTime()*1000L;
+
+            //Never more than half an interval early, so no group is polled much more often than configured
+            if(due-currentTime <= Math.min(Constants.COALESCE_WINDOW, interval/2))
             {
-                preparePolling(objects.get(metrics.get(entry.getKey()).getLong("metric_object")),metrics.get(entry.getKey()),currentTime);
+                group.add(sibling);
 
-                pollDevices.put(entry.getKey(),entry.getValue()+metrics.get(entry.getKey()).getInteger("metric_poll_time")*1000L);
+                schedule(siblingId, currentTime+interval);
             }
         }
     }
 
-    private void preparePolling(JsonObject objectData, JsonObject metricData, long currentTime)
+    private void preparePolling(ObjectRow objectData, List<MetricRow> group, long currentTime)
     {
         try
         {
-            vertx.eventBus().send(Constants.OBJECT_POLL, new JsonObject()
-                    .put("credential.profile", objectData.getLong("credential_profile"))
-                    .put("ip", objectData.getString("ip"))
-                    .put("port",objectData.getInteger("port"))
-                    .put("device_type", objectData.getString("device_type"))
-                    .put("metric.group.name", metricData.getString("metric_group_name"))
-                    .put("timestamp", currentTime / 1000));
-
-            LOGGER.info("Polling triggered for {} at {}", objectData.getString("hostname"), objectData.getString("ip"));
+            var pollingData = new JsonObject()
+                    .put("credential.profile", objectData.credentialProfile())
+                    .put("ip", objectData.ip())
+                    .put("port",objectData.port())
+                    .put("device_type", objectData.deviceType());
+
+            if(Constants.POLL_COALESCE)
+            {
+                //One plugin run, and one session to the device, collects every group
+                var groups = new JsonArray();
+
+                var ids = new JsonArray();
+
+                group.forEach(metricData ->
+                {
+                    groups.add(metricData.metricGroupName());
+
+                    ids.add(metricData.metricId());
+                });
+
+                pollingData.put("metric.groups", groups).put("metric.ids", ids);
+            }
+            else
+            {
+                pollingData.put("metric.group.name", group.getFirst().metricGroupName())
+                        .put("metric.id", group.getFirst().metricId());
+            }
+
+            vertx.eventBus().send(Constants.OBJECT_POLL, pollingData.put("timestamp", currentTime / 1000));
+
+            LOGGER.info("Polling triggered for {} at {}", objectData.hostname(), objectData.ip());
         }
         catch (Exception exception)
         {
@@ -0,0 +1,55 @@
+package org.example.poll;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+//Delay between the time a metric was due and the time its poll was dispatched
+public class SchedulingLag
+{
+    private static final LongAdder polls = new LongAdder();
+
+    private static final LongAdder total = new LongAdder();
+
+    private static final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    private static final AtomicLong last = new AtomicLong();
+
+    private static final LongAdder deferred = new LongAdder();
+
+    private SchedulingLag()
+    {
+
+    }
+
+    public static void record(long lag)
+    {
+        polls.increment();
+
+        total.add(lag);
+
+        max.accumulate(lag);
+
+        last.set(lag);
+    }
+
+    //Polls Poller shed because their lane was full
+    public static void deferred(int count)
+    {
+        deferred.add(count);
+    }
+
+    public static JsonObject toJson()
+    {
+        var count = polls.sum();
+
+        return new JsonObject()
+                .put("polls.dispatched", count)
+                .put("lag.last.ms", last.get())
+                .put("lag.max.ms", max.get())
+                .put("lag.avg.ms", count == 0 ? 0 : total.sum() / count)
+                .put("polls.deferred", deferred.sum());
+    }
+}
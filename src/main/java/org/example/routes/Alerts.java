@@ -0,0 +1,308 @@
+package org.example.routes;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import org.example.Constants;
+import org.example.database.AlertRuleRow;
+import org.example.database.QueryUtility;
+import org.example.util.Helper;
+import org.example.util.ResponseWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+
+import static org.example.Main.alertRules;
+
+public class Alerts implements CrudOperations
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(Alerts.class);
+
+    //Request fields and the columns they are stored in
+    private static final Map<String, String> FIELDS = Map.of(
+            "alert.rule.name", "rule_name",
+            "metric.group.name", "metric_group_name",
+            "metric", "metric",
+            "rule.type", "rule_type",
+            "operator", "operator",
+            "threshold", "threshold",
+            "severity", "severity",
+            "object.id", "rule_object");
+
+    public void route(Router alertsRouter)
+    {
+        try
+        {
+            alertsRouter.post("/").handler(this::create);
+
+            alertsRouter.put("/:id").handler(this::update);
+
+            alertsRouter.get("/").handler(this::getAll);
+
+            alertsRouter.get("/:id").handler(this::get);
+
+            alertsRouter.delete("/:id").handler(this::delete);
+        }
+        catch (Exception exception)
+        {
+            LOGGER.error("Error in alert routing", exception);
+        }
+    }
+
+    private static JsonObject toColumns(JsonObject requestBody)
+    {
+        var row = new JsonObject();
+
+        FIELDS.forEach((field, column) ->
+        {
+            if (requestBody.containsKey(field))
+            {
+                row.put(column, requestBody.getValue(field));
+            }
+        });
+
+        return row;
+    }
+
+    //Creating alert rule
+    @Override
+    public void create(RoutingContext context)
+    {
+        try
+        {
+            var requestBody = context.body().asJsonObject();
+
+            var row = requestBody == null ? null : toColumns(requestBody);
+
+            if (row != null)
+            {
+                row.put("severity", row.getString("severity", "Major"));
+            }
+
+            var validation = Helper.validateAlertRule(row, null);
+
+            if (!validation.isEmpty())
+            {
+                ResponseWriter.send(context, 400, new JsonObject()
+                        .put(Constants.STATUS_CODE, 400)
+                        .put(Constants.MESSAGE, validation));
+
+                return;
+            }
+
+            QueryUtility.getInstance().insert(Constants.ALERT_RULES, row)
+                    .onComplete(result ->
+                    {
+                        if (result.succeeded())
+                        {
+                            Helper.insertInMap(alertRules, result.result(), AlertRuleRow.fromJson(row.copy().put("rule_id", result.result())));
+
+                            ResponseWriter.send(context, 201, new JsonObject()
+                                    .put(Constants.STATUS_CODE, 201)
+                                    .put(Constants.MESSAGE, "Alert rule created successfully")
+                                    .put(Constants.CONTEXT, new JsonObject().put("alert.rule.id", result.result())));
+                        }
+                        else
+                        {
+                            ResponseWriter.send(context, 500, new JsonObject()
+                                    .put(Constants.STATUS_CODE, 500)
+                                    .put(Constants.MESSAGE, "Failed to create alert rule")
+                                    .put(Constants.ERROR, result.cause().getMessage()));
+                        }
+                    });
+        }
+        catch (Exception exception)
+        {
+            ResponseWriter.send(context, 500, new JsonObject()
+                    .put(Constants.STATUS_CODE, 500)
+                    .put(Constants.MESSAGE, "Server error in creating alert rule")
+                    .put(Constants.ERROR, exception.getMessage()));
+        }
+    }
+
+    //Updating alert rule
+    @Override
+    public void update(RoutingContext context)
+    {
+        try
+        {
+            var id = Long.parseLong(context.pathParam("id"));
+
+            var requestBody = context.body().asJsonObject();
+
+            if (!alertRules.containsKey(id))
+            {
+                ResponseWriter.send(context, 404, new JsonObject()
+                        .put(Constants.STATUS_CODE, 404)
+                        .put(Constants.MESSAGE, "Alert rule not found for this ID"));
+
+                return;
+            }
+
+            var changes = requestBody == null ? new JsonObject() : toColumns(requestBody);
+
+            //The rule as it would be after the update has to be valid as a whole, it is checked as JSON so a wrong type is a 400
+            var merged = alertRules.get(id).toJson().mergeIn(changes);
+
+            var validation = changes.isEmpty() ? "Please enter the fields to update" : Helper.validateAlertRule(merged, id);
+
+            if (!validation.isEmpty())
+            {
+                ResponseWriter.send(context, 400, new JsonObject()
+                        .put(Constants.STATUS_CODE, 400)
+                        .put(Constants.MESSAGE, validation));
+
+                return;
+            }
+
+            var updated = AlertRuleRow.fromJson(merged);
+
+            QueryUtility.getInstance().update(Constants.ALERT_RULES, changes, new JsonObject().put("rule_id", id))
+                    .onComplete(result ->
+                    {
+                        if (result.succeeded())
+                        {
+                            alertRules.put(id, updated);
+
+                            ResponseWriter.send(context, 200, new JsonObject()
+                                    .put(Constants.STATUS_CODE, 200)
+                                    .put(Constants.MESSAGE, "Alert rule updated successfully"));
+                        }
+                        else
+                        {
+                            ResponseWriter.send(context, 500, new JsonObject()
+                                    .put(Constants.STATUS_CODE, 500)
+                                    .put(Constants.MESSAGE, "Database error while updating alert rule")
+                                    .put(Constants.ERROR, result.cause().getMessage()));
+                        }
+                    });
+        }
+        catch (Exception exception)
+        {
+            ResponseWriter.send(context, 500, new JsonObject()
+                    .put(Constants.STATUS_CODE, 500)
+                    .put(Constants.MESSAGE, "Server error in updating alert rule")
+                    .put(Constants.ERROR, "Please enter a valid alert rule ID"));
+        }
+    }
+
+    //Deleting alert rule
+    @Override
+    public void delete(RoutingContext context)
+    {
+        var ruleID = context.pathParam("id");
+
+        if (Helper.validateField(ruleID))
+        {
+            ResponseWriter.send(context, 404, new JsonObject()
+                    .put(Constants.STATUS_CODE, 404)
+                    .put(Constants.MESSAGE, "Please enter a valid alert rule ID"));
+            return;
+        }
+        try
+        {
+            var id = Long.parseLong(ruleID);
+
+            QueryUtility.getInstance().delete(Constants.ALERT_RULES, "rule_id", id)
+                    .onComplete(result ->
+                    {
+                        if (result.succeeded())
+                        {
+                            alertRules.remove(id);
+
+                            ResponseWriter.send(context, 200, new JsonObject()
+                                    .put(Constants.STATUS_CODE, 200)
+                                    .put(Constants.MESSAGE, "Alert rule deleted successfully"));
+                        }
+                        else
+                        {
+                            if (result.cause().getMessage().contains("Information not found"))
+                            {
+                                ResponseWriter.send(context, 404, new JsonObject()
+                                        .put(Constants.STATUS_CODE, 404)
+                                        .put(Constants.MESSAGE, "Alert rule not found for this ID"));
+                            }
+                            else
+                            {
+                                ResponseWriter.send(context, 500, new JsonObject()
+                                        .put(Constants.STATUS_CODE, 500)
+                                        .put(Constants.MESSAGE, "Database error while deleting alert rule")
+                                        .put(Constants.ERROR, result.cause().getMessage()));
+                            }
+                        }
+                    });
+        }
+        catch (Exception exception)
+        {
+            ResponseWriter.send(context, 500, new JsonObject()
+                    .put(Constants.STATUS_CODE, 500)
+                    .put(Constants.MESSAGE, "Server error in deleting alert rule")
+                    .put(Constants.ERROR, "Please enter a valid alert rule ID"));
+        }
+    }
+
+    //Fetching alert rule
+    @Override
+    public void get(RoutingContext context)
+    {
+        var ruleID = context.pathParam("id");
+
+        if (Helper.validateField(ruleID))
+        {
+            ResponseWriter.send(context, 404, new JsonObject()
+                    .put(Constants.STATUS_CODE, 404)
+                    .put(Constants.MESSAGE, "Please enter a valid alert rule ID"));
+            return;
+        }
+        try
+        {
+            var id = Long.parseLong(ruleID);
+
+            var row = alertRules.get(id);
+
+            //Only a found row is tagged, a missing one must not answer 304 to a tag it never had
+            if (row == null)
+            {
+                ResponseWriter.send(context, 404, new JsonObject()
+                        .put(Constants.STATUS_CODE, 404)
+                        .put(Constants.MESSAGE, "Alert rule not found for this ID"));
+                return;
+            }
+
+            if (ResponseWriter.notModified(context, alertRules))
+            {
+                return;
+            }
+
+            ResponseWriter.send(context, 200, new JsonObject()
+                    .put(Constants.STATUS_CODE, 200)
+                    .put(Constants.MESSAGE, "Alert rule fetched successfully")
+                    .put(Constants.CONTEXT, row.toJson()));
+        }
+        catch (Exception exception)
+        {
+            ResponseWriter.send(context, 500, new JsonObject()
+                    .put(Constants.STATUS_CODE, 500)
+                    .put(Constants.MESSAGE, "Server error in fetching alert rule")
+                    .put(Constants.ERROR, "Please enter a valid alert rule ID"));
+        }
+    }
+
+    //Fetching alert rules
+    @Override
+    public void getAll(RoutingContext context)
+    {
+        try
+        {
+            Listing.write(context, alertRules, AlertRuleRow::toJson, "Alert rules fetched successfully");
+        }
+        catch (Exception exception)
+        {
+            ResponseWriter.send(context, 500, new JsonObject()
+                    .put(Constants.STATUS_CODE,500)
+                    .put(Constants.MESSAGE,"Server error in fetching alert rules")
+                    .put(Constants.ERROR,exception.getMessage()));
+        }
+    }
+}
@@ -1,6 +1,6 @@
 package org.example.routes;
-import io.vertx.core.json.JsonArray;
 import org.example.Constants;
+import org.example.database.CredentialRow;
 import org.example.util.Helper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -8,6 +8,7 @@ import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
 import org.example.database.QueryUtility;
+import org.example.util.ResponseWriter;
 
 import static org.example.Main.credentials;
 
@@ -47,11 +48,9 @@ public class Credentials implements CrudOperations
 
             if(!validation.isEmpty())
             {
-                context.response()
-                        .setStatusCode(500)
-                        .end(new JsonObject()
-                                .put(Constants.STATUS_CODE,500)
-                                .put(Constants.MESSAGE,validation).encodePrettily());
+                ResponseWriter.send(context, 500, new JsonObject()
+                        .put(Constants.STATUS_CODE,500)
+                        .put(Constants.MESSAGE,validation));
 
                 return;
             }
@@ -68,41 +67,35 @@ public class Credentials implements CrudOperations
                     {
                         if (result.succeeded())
                         {
-                            Helper.insertInMap(credentials, result.result(), new JsonObject()
+                            Helper.insertInMap(credentials, result.result(), CredentialRow.fromJson(new JsonObject()
                                     .put("profile_id", result.result())
                                     .put("profile_name", requestBody.getString("credential.profile.name"))
                                     .put("profile_protocol", requestBody.getString("credential.profile.protocol"))
                                     .put("user_name", requestBody.getString("user.name"))
                                     .put("user_password", requestBody.getString("user.password"))
                                     .put("community", requestBody.getString("community"))
-                                    .put("version", requestBody.getString("version")));
-
-                            context.response()
-                                    .setStatusCode(201)
-                                    .end(new JsonObject()
-                                            .put(Constants.STATUS_CODE, 201)
-                                            .put(Constants.MESSAGE, "Credential profile created successfully")
-                                            .put(Constants.CONTEXT, new JsonObject().put("credential.profile.id", result.result())).encodePrettily());
+                                    .put("version", requestBody.getString("version"))));
+
+                            ResponseWriter.send(context, 201, new JsonObject()
+                                    .put(Constants.STATUS_CODE, 201)
+                                    .put(Constants.MESSAGE, "Credential profile created successfully")
+                                    .put(Constants.CONTEXT, new JsonObject().put("credential.profile.id", result.result())));
                         }
                         else
                         {
-                            context.response()
-                                    .setStatusCode(500)
-                                    .end(new JsonObject()
-                                            .put(Constants.STATUS_CODE, 500)
-                                            .put(Constants.MESSAGE, "Failed to create credential profile")
-                                            .put(Constants.ERROR, result.cause().getMessage()).encodePrettily());
+                            ResponseWriter.send(context, 500, new JsonObject()
+                                    .put(Constants.STATUS_CODE, 500)
+                                    .put(Constants.MESSAGE, "Failed to create credential profile")
+                                    .put(Constants.ERROR, result.cause().getMessage()));
                         }
                     });
         }
         catch (Exception exception)
         {
-            context.response()
-                    .setStatusCode(500)
-                    .end(new JsonObject()
-                            .put(Constants.STATUS_CODE, 500)
-                            .put(Constants.MESSAGE, "Server error in creating credential profile")
-                            .put(Constants.ERROR, exception.getCause().getMessage()).encodePrettily());
+            ResponseWriter.send(context, 500, new JsonObject()
+                    .put(Constants.STATUS_CODE, 500)
+                    .put(Constants.MESSAGE, "Server error in creating credential profile")
+                    .put(Constants.ERROR, exception.getCause().getMessage()));
         }
     }
 
@@ -113,7 +106,15 @@ public class Credentials implements CrudOperations
 
         var credentialID = context.pathParam("id");
 
-        var requestBody = context.body().asJsonObject();
+        var requestBody = Helper.columns(context.body().asJsonObject(), CredentialRow.UPDATABLE);
+
+        if (requestBody.isEmpty())
+        {
+            ResponseWriter.send(context, 400, new JsonObject()
+                    .put(Constants.STATUS_CODE, 400)
+                    .put(Constants.MESSAGE, "Please enter at least one credential profile column to update"));
+            return;
+        }
 
         try
         {
@@ -124,48 +125,36 @@ public class Credentials implements CrudOperations
                     {
                         if(result.succeeded())
                         {
-                            var existing = credentials.get(id);
+                            credentials.put(id,credentials.get(id).with(requestBody));
 
-                            requestBody.forEach(entry->existing.put(entry.getKey(),entry.getValue()));
-
-                            credentials.put(id,existing);
-
-                            context.response()
-                                    .setStatusCode(200)
-                                    .end(new JsonObject()
-                                            .put(Constants.STATUS_CODE,200)
-                                            .put(Constants.MESSAGE,"Credential profile updated successfully").encodePrettily());
+                            ResponseWriter.send(context, 200, new JsonObject()
+                                    .put(Constants.STATUS_CODE,200)
+                                    .put(Constants.MESSAGE,"Credential profile updated successfully"));
                         }
                         else
                         {
                             if (result.cause().getMessage().contains("No matching rows found"))
                             {
-                                context.response()
-                                        .setStatusCode(404)
-                                        .end(new JsonObject()
-                                                .put(Constants.STATUS_CODE,404)
-                                                .put(Constants.MESSAGE,"Credential profile not found of this ID").encodePrettily());
+                                ResponseWriter.send(context, 404, new JsonObject()
+                                        .put(Constants.STATUS_CODE,404)
+                                        .put(Constants.MESSAGE,"Credential profile not found of this ID"));
                             }
                             else
                             {
-                                context.response()
-                                        .setStatusCode(500)
-                                        .end(new JsonObject()
-                                                .put(Constants.STATUS_CODE,500)
-                                                .put(Constants.MESSAGE,"Database error while updating credential profile")
-                                                .put(Constants.ERROR,result.cause().getMessage()).encodePrettily());
+                                ResponseWriter.send(context, 500, new JsonObject()
+                                        .put(Constants.STATUS_CODE,500)
+                                        .put(Constants.MESSAGE,"Database error while updating credential profile")
+                                        .put(Constants.ERROR,result.cause().getMessage()));
                             }
                         }
                     });
         }
         catch (Exception exception)
         {
-            context.response()
-                    .setStatusCode(500)
-                    .end(new JsonObject()
-                            .put(Constants.STATUS_CODE,500)
-                            .put(Constants.MESSAGE,"Server error in updating credential profile")
-                            .put(Constants.ERROR,exception.getCause().getMessage()).encodePrettily());
+            ResponseWriter.send(context, 500, new JsonObject()
+                    .put(Constants.STATUS_CODE,500)
+                    .put(Constants.MESSAGE,"Server error in updating credential profile")
+                    .put(Constants.ERROR,exception.getCause().getMessage()));
         }
     }
 
@@ -177,11 +166,9 @@ public class Credentials implements CrudOperations
 
         if (Helper.validateField(credentialID))
         {
-            context.response()
-                    .setStatusCode(404)
-                    .end(new JsonObject()
-                            .put(Constants.STATUS_CODE, 404)
-                            .put(Constants.MESSAGE, "Please enter a valid credential ID").encodePrettily());
+            ResponseWriter.send(context, 404, new JsonObject()
+                    .put(Constants.STATUS_CODE, 404)
+                    .put(Constants.MESSAGE, "Please enter a valid credential ID"));
             return;
         }
         try
@@ -195,42 +182,34 @@ public class Credentials implements CrudOperations
                         {
                             credentials.remove(id);
 
-                            context.response()
-                                    .setStatusCode(200)
-                                    .end(new JsonObject()
-                                            .put(Constants.STATUS_CODE, 200)
-                                            .put(Constants.MESSAGE, "Credential profile deleted successfully").encodePrettily());
+                            ResponseWriter.send(context, 200, new JsonObject()
+                                    .put(Constants.STATUS_CODE, 200)
+                                    .put(Constants.MESSAGE, "Credential profile deleted successfully"));
                         }
                         else
                         {
                             if (result.cause().getMessage().contains("Information not found"))
                             {
-                                context.response()
-                                        .setStatusCode(404)
-                                        .end(new JsonObject()
-                                                .put(Constants.STATUS_CODE, 404)
-                                                .put(Constants.MESSAGE, "Credential profile not found for this ID").encodePrettily());
+                                ResponseWriter.send(context, 404, new JsonObject()
+                                        .put(Constants.STATUS_CODE, 404)
+                                        .put(Constants.MESSAGE, "Credential profile not found for this ID"));
                             }
                             else
                             {
-                                context.response()
-                                        .setStatusCode(500)
-                                        .end(new JsonObject()
-                                                .put(Constants.STATUS_CODE, 500)
-                                                .put(Constants.MESSAGE, "Database error while deleting credential profile")
-                                                .put(Constants.ERROR, result.cause().getMessage()).encodePrettily());
+                                ResponseWriter.send(context, 500, new JsonObject()
+                                        .put(Constants.STATUS_CODE, 500)
+                                        .put(Constants.MESSAGE, "Database error while deleting credential profile")
+                                        .put(Constants.ERROR, result.cause().getMessage()));
                             }
                         }
                     });
         }
         catch (Exception exception)
         {
-            context.response()
-                    .setStatusCode(500)
-                    .end(new JsonObject()
-                            .put(Constants.STATUS_CODE, 500)
-                            .put(Constants.MESSAGE, "Server error in deleting credential profile")
-                            .put(Constants.ERROR, "Please enter a valid credential profile ID").encodePrettily());
+            ResponseWriter.send(context, 500, new JsonObject()
+                    .put(Constants.STATUS_CODE, 500)
+                    .put(Constants.MESSAGE, "Server error in deleting credential profile")
+                    .put(Constants.ERROR, "Please enter a valid credential profile ID"));
         }
     }
 
@@ -243,43 +222,42 @@ public class Credentials implements CrudOperations
 
         if (Helper.validateField(credentialID))
         {
-            context.response()
-                    .setStatusCode(404)
-                    .end(new JsonObject()
-                            .put(Constants.STATUS_CODE, 404)
-                            .put(Constants.MESSAGE, "Please enter a valid credential ID").encodePrettily());
+            ResponseWriter.send(context, 404, new JsonObject()
+                    .put(Constants.STATUS_CODE, 404)
+                    .put(Constants.MESSAGE, "Please enter a valid credential ID"));
             return;
         }
         try
         {
             var id = Long.parseLong(credentialID);
 
-            if(credentials.containsKey(id))
+            var row = credentials.get(id);
+
+            //Only a found row is tagged, a missing one must not answer 304 to a tag it never had
+            if (row == null)
             {
-                context.response()
-                        .setStatusCode(200)
-                        .end(new JsonObject()
-                                .put(Constants.STATUS_CODE, 200)
-                                .put(Constants.MESSAGE, "Credential profile fetched successfully")
-                                .put(Constants.CONTEXT, credentials.get(id)).encodePrettily());
+                ResponseWriter.send(context, 404, new JsonObject()
+                        .put(Constants.STATUS_CODE, 404)
+                        .put(Constants.MESSAGE, "Credential profile not found for this ID"));
+                return;
             }
-            else
+
+            if (ResponseWriter.notModified(context, credentials))
             {
-                context.response()
-                        .setStatusCode(404)
-                        .end(new JsonObject()
-                                .put(Constants.STATUS_CODE, 404)
-                                .put(Constants.MESSAGE, "Credential profile not found for this ID").encodePrettily());
+                return;
             }
+
+            ResponseWriter.send(context, 200, new JsonObject()
+                    .put(Constants.STATUS_CODE, 200)
+                    .put(Constants.MESSAGE, "Credential profile fetched successfully")
+                    .put(Constants.CONTEXT, row.toJson()));
         }
         catch (Exception exception)
         {
-            context.response()
-                    .setStatusCode(500)
-                    .end(new JsonObject()
-                            .put(Constants.STATUS_CODE, 500)
-                            .put(Constants.MESSAGE, "Server error in fetching credential profile")
-                            .put(Constants.ERROR, "Please enter a valid credential profile ID").encodePrettily());
+            ResponseWriter.send(context, 500, new JsonObject()
+                    .put(Constants.STATUS_CODE, 500)
+                    .put(Constants.MESSAGE, "Server error in fetching credential profile")
+                    .put(Constants.ERROR, "Please enter a valid credential profile ID"));
         }
     }
 
@@ -289,37 +267,14 @@ public class Credentials implements CrudOperations
     {
         try
         {
-            if (!credentials.isEmpty())
-            {
-                var records = new JsonArray();
-
-                credentials.forEach((id, profile) -> records.add(profile));
-
-                context.response()
-                        .setStatusCode(200)
-                        .end(new JsonObject()
-                                .put(Constants.STATUS_CODE, 200)
-                                .put(Constants.MESSAGE, "Credential profiles fetched successfully")
-                                .put(Constants.CONTEXT, records).encodePrettily());
-            }
-            else
-            {
-                context.response()
-                        .setStatusCode(200)
-                        .end(new JsonObject()
-                                .put(Constants.STATUS_CODE, 200)
-                                .put(Constants.MESSAGE, "Credential profiles fetched successfully")
-                                .put(Constants.CONTEXT, "No credential profiles currently").encodePrettily());
-            }
+            Listing.write(context, credentials, CredentialRow::toJson, "Credential profiles fetched successfully");
         }
         catch (Exception exception)
         {
-            context.response()
-                    .setStatusCode(500)
-                    .end(new JsonObject()
-                            .put(Constants.STATUS_CODE,500)
-                            .put(Constants.MESSAGE,"Server error in fetching credential profiles")
-                            .put(Constants.ERROR,exception.getCause().getMessage()).encodePrettily());
+            ResponseWriter.send(context, 500, new JsonObject()
+                    .put(Constants.STATUS_CODE,500)
+                    .put(Constants.MESSAGE,"Server error in fetching credential profiles")
+                    .put(Constants.ERROR,exception.getMessage()));
         }
     }
 }
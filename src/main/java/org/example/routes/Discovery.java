@@ -1,15 +1,15 @@
 package org.example.routes;
 
-import io.vertx.core.Promise;
-import io.vertx.core.WorkerExecutor;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
 import org.example.Constants;
-import org.example.Main;
+import org.example.database.DiscoveryRow;
 import org.example.database.QueryUtility;
+import org.example.util.BlockingExecutor;
 import org.example.util.Helper;
+import org.example.util.ResponseWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import io.vertx.core.Future;
@@ -25,7 +25,7 @@ public class Discovery implements CrudOperations
 {
     private static final Logger LOGGER = LoggerFactory.getLogger(Discovery.class);
 
-    private static final WorkerExecutor discover = Main.vertx.createSharedWorkerExecutor("discovery",10,60, TimeUnit.SECONDS);
+    private static final BlockingExecutor discover = BlockingExecutor.create("discovery",Constants.DISCOVERY_THREADS);
 
     public void route(Router discoveryRouter)
     {
@@ -60,11 +60,9 @@ public class Discovery implements CrudOperations
 
             if(!validation.isEmpty())
             {
-                context.response()
-                        .setStatusCode(500)
-                        .end(new JsonObject()
-                                .put(Constants.STATUS_CODE,500)
-                                .put(Constants.MESSAGE,validation).encodePrettily());
+                ResponseWriter.send(context, 500, new JsonObject()
+                        .put(Constants.STATUS_CODE,500)
+                        .put(Constants.MESSAGE,validation));
 
                 return;
             }
@@ -80,7 +78,7 @@ public class Discovery implements CrudOperations
                     {
                         if(result.succeeded())
                         {
-                            Helper.insertInMap(discoveries,result.result(),new JsonObject()
+                            Helper.insertInMap(discoveries,result.result(),DiscoveryRow.fromJson(new JsonObject()
                                     .put("discovery_id",result.result())
                                     .put("credential_profile",null)
                                     .put("name",requestBody.getString("discovery.name"))
@@ -89,33 +87,27 @@ public class Discovery implements CrudOperations
                                     .put("credential_profiles",requestBody.getJsonArray("discovery.credential.profiles"))
                                     .put("device_type",requestBody.getString("device.type"))
                                     .put("hostname",null)
-                                    .put("status","Down"));
+                                    .put("status","Down")));
 
-                            context.response()
-                                    .setStatusCode(201)
-                                    .end(new JsonObject()
-                                            .put(Constants.STATUS_CODE,201).put(Constants.MESSAGE,"Discovery created successfully")
-                                            .put(Constants.CONTEXT,new JsonObject().put("discovery.id", result.result())).encodePrettily());
+                            ResponseWriter.send(context, 201, new JsonObject()
+                                    .put(Constants.STATUS_CODE,201).put(Constants.MESSAGE,"Discovery created successfully")
+                                    .put(Constants.CONTEXT,new JsonObject().put("discovery.id", result.result())));
                         }
                         else
                         {
-                            context.response()
-                                    .setStatusCode(500)
-                                    .end(new JsonObject()
-                                            .put(Constants.STATUS_CODE,500)
-                                            .put(Constants.MESSAGE,"Failed to create discovery")
-                                            .put(Constants.ERROR,result.cause().getMessage()).encodePrettily());
+                            ResponseWriter.send(context, 500, new JsonObject()
+                                    .put(Constants.STATUS_CODE,500)
+                                    .put(Constants.MESSAGE,"Failed to create discovery")
+                                    .put(Constants.ERROR,result.cause().getMessage()));
                         }
                     });
         }
         catch (Exception exception)
         {
-            context.response()
-                    .setStatusCode(500)
-                    .end(new JsonObject()
-                            .put(Constants.STATUS_CODE,500)
-                            .put(Constants.MESSAGE,"Server error in creating discovery")
-                            .put(Constants.ERROR,exception.getCause().getMessage()).encodePrettily());
+            ResponseWriter.send(context, 500, new JsonObject()
+                    .put(Constants.STATUS_CODE,500)
+                    .put(Constants.MESSAGE,"Server error in creating discovery")
+                    .put(Constants.ERROR,exception.getCause().getMessage()));
         }
     }
 
@@ -124,7 +116,15 @@ public class Discovery implements CrudOperations
     {
         var discoveryID = context.pathParam("id");
 
-        var requestBody = context.body().asJsonObject();
+        var requestBody = Helper.columns(context.body().asJsonObject(), DiscoveryRow.UPDATABLE);
+
+        if (requestBody.isEmpty())
+        {
+            ResponseWriter.send(context, 400, new JsonObject()
+                    .put(Constants.STATUS_CODE, 400)
+                    .put(Constants.MESSAGE, "Please enter at least one discovery column to update"));
+            return;
+        }
 
         try
         {
@@ -135,48 +135,36 @@ public class Discovery implements CrudOperations
                     {
                         if(result.succeeded())
                         {
-                            var existing = discoveries.get(id);
-
-                            requestBody.forEach(entry->existing.put(entry.getKey(),entry.getValue()));
+                            discoveries.put(id,discoveries.get(id).with(requestBody));
 
-                            discoveries.put(id,existing);
-
-                            context.response()
-                                    .setStatusCode(200)
-                                    .end(new JsonObject()
-                                            .put(Constants.STATUS_CODE,200)
-                                            .put(Constants.MESSAGE,"Discovery updated successfully").encodePrettily());
+                            ResponseWriter.send(context, 200, new JsonObject()
+                                    .put(Constants.STATUS_CODE,200)
+                                    .put(Constants.MESSAGE,"Discovery updated successfully"));
                         }
                         else
                         {
                             if (result.cause().getMessage().contains("No matching rows found"))
                             {
-                                context.response()
-                                        .setStatusCode(404)
-                                        .end(new JsonObject()
-                                                .put(Constants.STATUS_CODE,404)
-                                                .put(Constants.MESSAGE,"Discovery not found of this ID").encodePrettily());
+                                ResponseWriter.send(context, 404, new JsonObject()
+                                        .put(Constants.STATUS_CODE,404)
+                                        .put(Constants.MESSAGE,"Discovery not found of this ID"));
                             }
                             else
                             {
-                                context.response()
-                                        .setStatusCode(500)
-                                        .end(new JsonObject()
-                                                .put(Constants.STATUS_CODE,500)
-                                                .put(Constants.MESSAGE,"Database error while updating discovery")
-                                                .put(Constants.ERROR,result.cause().getMessage()).encodePrettily());
+                                ResponseWriter.send(context, 500, new JsonObject()
+                                        .put(Constants.STATUS_CODE,500)
+                                        .put(Constants.MESSAGE,"Database error while updating discovery")
+                                        .put(Constants.ERROR,result.cause().getMessage()));
                             }
                         }
                     });
         }
         catch (Exception exception)
         {
-            context.response()
-                    .setStatusCode(500)
-                    .end(new JsonObject()
-                            .put(Constants.STATUS_CODE,500)
-                            .put(Constants.MESSAGE,"Server error in updating discovery")
-                            .put(Constants.ERROR,exception.getCause().getMessage()).encodePrettily());
+            ResponseWriter.send(context, 500, new JsonObject()
+                    .put(Constants.STATUS_CODE,500)
+                    .put(Constants.MESSAGE,"Server error in updating discovery")
+                    .put(Constants.ERROR,exception.getCause().getMessage()));
         }
     }
 
@@ -187,11 +175,9 @@ public class Discovery implements CrudOperations
 
         if (Helper.validateField(discoveryID))
         {
-            context.response()
-                    .setStatusCode(404)
-                    .end(new JsonObject()
-                            .put(Constants.STATUS_CODE, 404)
-                            .put(Constants.MESSAGE, "Please enter a valid discovery ID").encodePrettily());
+            ResponseWriter.send(context, 404, new JsonObject()
+                    .put(Constants.STATUS_CODE, 404)
+                    .put(Constants.MESSAGE, "Please enter a valid discovery ID"));
             return;
         }
         try
@@ -205,42 +191,34 @@ public class Discovery implements CrudOperations
                         {
                             discoveries.remove(id);
 
-                            context.response()
-                                    .setStatusCode(200)
-                                    .end(new JsonObject()
-                                            .put(Constants.STATUS_CODE, 200)
-                                            .put(Constants.MESSAGE, "Discovery deleted successfully").encodePrettily());
+                            ResponseWriter.send(context, 200, new JsonObject()
+                                    .put(Constants.STATUS_CODE, 200)
+                                    .put(Constants.MESSAGE, "Discovery deleted successfully"));
                         }
                         else
                         {
                             if (result.cause().getMessage().contains("Information not found"))
                             {
-                                context.response()
-                                        .setStatusCode(404)
-                                        .end(new JsonObject()
-                                                .put(Constants.STATUS_CODE, 404)
-                                                .put(Constants.MESSAGE, "Discovery not found for this ID").encodePrettily());
+                                ResponseWriter.send(context, 404, new JsonObject()
+                                        .put(Constants.STATUS_CODE, 404)
+                                        .put(Constants.MESSAGE, "Discovery not found for this ID"));
                             }
                             else
                             {
-                                context.response()
-                                        .setStatusCode(500)
-                                        .end(new JsonObject()
-                                                .put(Constants.STATUS_CODE, 500)
-                                                .put(Constants.MESSAGE, "Database error while deleting discovery")
-                                                .put(Constants.ERROR, result.cause().getMessage()).encodePrettily());
+                                ResponseWriter.send(context, 500, new JsonObject()
+                                        .put(Constants.STATUS_CODE, 500)
+                                        .put(Constants.MESSAGE, "Database error while deleting discovery")
+                                        .put(Constants.ERROR, result.cause().getMessage()));
                             }
                         }
                     });
         }
         catch (Exception exception)
         {
-            context.response()
-                    .setStatusCode(500)
-                    .end(new JsonObject()
-                            .put(Constants.STATUS_CODE, 500)
-                            .put(Constants.MESSAGE, "Server error in deleting discovery")
-                            .put(Constants.ERROR, "Please enter a valid discovery ID").encodePrettily());
+            ResponseWriter.send(context, 500, new JsonObject()
+                    .put(Constants.STATUS_CODE, 500)
+                    .put(Constants.MESSAGE, "Server error in deleting discovery")
+                    .put(Constants.ERROR, "Please enter a valid discovery ID"));
         }
     }
 
@@ -251,43 +229,42 @@ public class Discovery implements CrudOperations
 
         if (Helper.validateField(discoveryID))
         {
-            context.response()
-                    .setStatusCode(404)
-                    .end(new JsonObject()
-                            .put(Constants.STATUS_CODE, 404)
-                            .put(Constants.MESSAGE, "Please enter a valid discovery ID").encodePrettily());
+            ResponseWriter.send(context, 404, new JsonObject()
+                    .put(Constants.STATUS_CODE, 404)
+                    .put(Constants.MESSAGE, "Please enter a valid discovery ID"));
             return;
         }
         try
         {
             var id = Long.parseLong(discoveryID);
 
-            if(discoveries.containsKey(id))
+            var row = discoveries.get(id);
+
+            //Only a found row is tagged, a missing one must not answer 304 to a tag it never had
+            if (row == null)
             {
-                context.response()
-                        .setStatusCode(200)
-                        .end(new JsonObject()
-                                .put(Constants.STATUS_CODE, 200)
-                                .put(Constants.MESSAGE, "Discovery fetched successfully")
-                                .put(Constants.CONTEXT, discoveries.get(id)).encodePrettily());
+                ResponseWriter.send(context, 404, new JsonObject()
+                        .put(Constants.STATUS_CODE, 404)
+                        .put(Constants.MESSAGE, "Discovery not found for this ID"));
+                return;
             }
-            else
+
+            if (ResponseWriter.notModified(context, discoveries))
             {
-                context.response()
-                        .setStatusCode(404)
-                        .end(new JsonObject()
-                                .put(Constants.STATUS_CODE, 404)
-                                .put(Constants.MESSAGE, "Discovery not found for this ID").encodePrettily());
+                return;
             }
+
+            ResponseWriter.send(context, 200, new JsonObject()
+                    .put(Constants.STATUS_CODE, 200)
+                    .put(Constants.MESSAGE, "Discovery fetched successfully")
+                    .put(Constants.CONTEXT, row.toJson()));
         }
         catch (Exception exception)
         {
-            context.response()
-                    .setStatusCode(500)
-                    .end(new JsonObject()
-                            .put(Constants.STATUS_CODE, 500)
-                            .put(Constants.MESSAGE, "Server error in fetching discovery")
-                            .put(Constants.ERROR, "Please enter a valid discovery ID").encodePrettily());
+            ResponseWriter.send(context, 500, new JsonObject()
+                    .put(Constants.STATUS_CODE, 500)
+                    .put(Constants.MESSAGE, "Server error in fetching discovery")
+                    .put(Constants.ERROR, "Please enter a valid discovery ID"));
         }
     }
 
@@ -296,37 +273,14 @@ public class Discovery implements CrudOperations
     {
         try
         {
-            if (!discoveries.isEmpty())
-            {
-                var records = new JsonArray();
-
-                discoveries.forEach((id, profile) -> records.add(profile));
-
-                context.response()
-                        .setStatusCode(200)
-                        .end(new JsonObject()
-                                .put(Constants.STATUS_CODE, 200)
-                                .put(Constants.MESSAGE, "Discoveries fetched successfully")
-                                .put(Constants.CONTEXT, records).encodePrettily());
-            }
-            else
-            {
-                context.response()
-                        .setStatusCode(200)
-                        .end(new JsonObject()
-                                .put(Constants.STATUS_CODE, 200)
-                                .put(Constants.MESSAGE, "Discoveries fetched successfully")
-                                .put(Constants.CONTEXT, "No discovery currently").encodePrettily());
-            }
+            Listing.write(context, discoveries, DiscoveryRow::toJson, "Discoveries fetched successfully");
         }
         catch (Exception exception)
         {
-            context.response()
-                    .setStatusCode(500)
-                    .end(new JsonObject()
-                            .put(Constants.STATUS_CODE,500)
-                            .put(Constants.MESSAGE,"Server error in fetching discoveries")
-                            .put(Constants.ERROR,exception.getCause().getMessage()).encodePrettily());
+            ResponseWriter.send(context, 500, new JsonObject()
+                    .put(Constants.STATUS_CODE,500)
+                    .put(Constants.MESSAGE,"Server error in fetching discoveries")
+                    .put(Constants.ERROR,exception.getMessage()));
         }
     }
 
@@ -336,11 +290,9 @@ public class Discovery implements CrudOperations
 
         if (Helper.validateField(discoveryID))
         {
-            context.response()
-                    .setStatusCode(404)
-                    .end(new JsonObject()
-                            .put(Constants.STATUS_CODE, 404)
-                            .put(Constants.MESSAGE, "Please enter a valid discovery ID").encodePrettily());
+            ResponseWriter.send(context, 404, new JsonObject()
+                    .put(Constants.STATUS_CODE, 404)
+                    .put(Constants.MESSAGE, "Please enter a valid discovery ID"));
             return;
         }
         try
@@ -350,25 +302,22 @@ public class Discovery implements CrudOperations
             //Discovery ID must be present
             if(!discoveries.containsKey(id))
             {
-                context.response()
-                        .setStatusCode(404)
-                        .end(new JsonObject()
-                                .put(Constants.STATUS_CODE, 404)
-                                .put(Constants.MESSAGE, "Discovery not found for this ID").encodePrettily());
+                ResponseWriter.send(context, 404, new JsonObject()
+                        .put(Constants.STATUS_CODE, 404)
+                        .put(Constants.MESSAGE, "Discovery not found for this ID"));
 
                 return;
             }
 
-            var deviceInfo = discoveries.get(id);
+            //Working copy, the cached row is only replaced once the database is updated
+            var deviceInfo = discoveries.get(id).toJson();
 
             //If device is already provisioned, no need to go further
             if(Helper.isProvisioned(deviceInfo.getString("ip")))
             {
-                context.response()
-                        .setStatusCode(404)
-                        .end(new JsonObject()
-                                .put(Constants.STATUS_CODE, 404)
-                                .put(Constants.MESSAGE, "Device is already provisioned").encodePrettily());
+                ResponseWriter.send(context, 404, new JsonObject()
+                        .put(Constants.STATUS_CODE, 404)
+                        .put(Constants.MESSAGE, "Device is already provisioned"));
 
                 return;
             }
@@ -379,7 +328,9 @@ public class Discovery implements CrudOperations
             {
                 var profileID = deviceInfo.getJsonArray("credential_profiles").getLong(i);
 
-                records.add(credentials.get(profileID));
+                var credential = credentials.get(profileID);
+
+                records.add(credential == null ? null : credential.toJson());
             }
 
             deviceInfo.put("discovery.credential.profiles",records);
@@ -430,7 +381,7 @@ public class Discovery implements CrudOperations
                                     {
                                         if (updateResult)
                                         {
-                                            discoveries.put(id,result);
+                                            discoveries.put(id,DiscoveryRow.fromJson(result));
 
                                             return Future.succeededFuture("Device status updated in database");
                                         }
@@ -445,24 +396,22 @@ public class Discovery implements CrudOperations
                             return Future.failedFuture("Error during updating status of device in database " + exception.getMessage());
                         }
                     })
-                    .onSuccess(finalResult -> context.response().setStatusCode(200).end(new JsonObject().put(Constants.STATUS_CODE,200).put(Constants.MESSAGE,finalResult).encodePrettily()))
+                    .onSuccess(finalResult -> ResponseWriter.send(context, 200, new JsonObject().put(Constants.STATUS_CODE,200).put(Constants.MESSAGE,finalResult)))
 
-                    .onFailure(error -> context.response().setStatusCode(400).end(new JsonObject().put(Constants.STATUS_CODE,400).put(Constants.MESSAGE,error.getMessage()).encodePrettily()));
+                    .onFailure(error -> ResponseWriter.send(context, 400, new JsonObject().put(Constants.STATUS_CODE,400).put(Constants.MESSAGE,error.getMessage())));
         }
         catch (Exception exception)
         {
-            context.response()
-                    .setStatusCode(500)
-                    .end(new JsonObject()
-                            .put(Constants.STATUS_CODE,500)
-                            .put(Constants.MESSAGE,"Server error in checking if the device is up or not")
-                            .put(Constants.ERROR,exception.getCause().getMessage()).encodePrettily());
+            ResponseWriter.send(context, 500, new JsonObject()
+                    .put(Constants.STATUS_CODE,500)
+                    .put(Constants.MESSAGE,"Server error in checking if the device is up or not")
+                    .put(Constants.ERROR,exception.getCause().getMessage()));
         }
     }
 
     private Future<JsonObject> validCredential(JsonObject deviceInfo)
     {
-        return discover.executeBlocking(promise ->
+        return discover.execute(() ->
         {
             try
             {
@@ -470,68 +419,42 @@ public class Discovery implements CrudOperations
 
                 deviceInfo.remove(Constants.EVENT_TYPE);
 
-                promise.complete(deviceInfo);
+                return deviceInfo;
             }
             catch (Exception exception)
             {
-                promise.fail("Error during finding valid credential profile: " + exception.getMessage());
+                throw new IllegalStateException("Error during finding valid credential profile: " + exception.getMessage());
             }
         });
     }
 
     private Future<Boolean> ping(String ip)
     {
-        var promise = Promise.<Boolean>promise();
-
-        discover.<Boolean>executeBlocking(pingFuture->
+        return discover.execute(() ->
         {
-            try
-            {
-                var process = new ProcessBuilder("ping","-c 5",ip).start();
-
-                var reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+            var process = new ProcessBuilder("ping","-c 5",ip).start();
 
-                var down = false;
+            var reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
 
-                //Due to network latency if 5 packets are not send, then waitFor
-                var status = process.waitFor(5, TimeUnit.SECONDS); //Will return boolean , while exitvalue returns 0 or other value
-
-                if(!status || process.exitValue()!=0)
-                {
-                    process.destroy();
+            //Due to network latency if 5 packets are not send, then waitFor
+            var status = process.waitFor(5, TimeUnit.SECONDS); //Will return boolean , while exitvalue returns 0 or other value
 
-                    pingFuture.complete(false);
+            if(!status || process.exitValue()!=0)
+            {
+                process.destroy();
 
-                    return;
-                }
+                return false;
+            }
 
-                for (var line = reader.readLine(); line != null; line = reader.readLine())
+            for (var line = reader.readLine(); line != null; line = reader.readLine())
+            {
+                if (line.contains("100% packet loss"))
                 {
-                    if (line.contains("100% packet loss"))
-                    {
-                        down = true;
-
-                        break;
-                    }
+                    return false;
                 }
-                pingFuture.complete(!down);
-            }
-            catch (Exception exception)
-            {
-                pingFuture.fail(exception);
-            }
-        },false,result->
-        {
-            if (result.succeeded())
-            {
-                promise.complete(result.result());
-            }
-            else
-            {
-                promise.fail(result.cause());
             }
+            return true;
         });
-        return promise.future();
     }
 
     private boolean isPortOpen(String ip,Integer port)
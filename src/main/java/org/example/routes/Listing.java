@@ -0,0 +1,203 @@
+package org.example.routes;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import org.example.Constants;
+import org.example.database.Store;
+import org.example.util.ResponseWriter;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.function.Function;
+
+//Writes a page of cached rows as a chunked response, rows are encoded straight into small buffers instead of one JSON tree
+//With ?pretty=true each row is indented on its own as it is written, so the page is still never one tree in memory
+//Query parameters: cursor (last ID of the previous page), limit (rows per page) and fields (comma separated keys to keep)
+class Listing<T>
+{
+    private final RoutingContext context;
+
+    private final Store<T> store;
+
+    private final Function<T, JsonObject> mapper;
+
+    private final Iterator<Long> ids;
+
+    private final int limit;
+
+    private final Set<String> fields;
+
+    private final boolean pretty;
+
+    private int count;
+
+    private Long last;
+
+    private Listing(RoutingContext context, Store<T> store, Function<T, JsonObject> mapper, Long cursor, int limit, Set<String> fields)
+    {
+        this.context = context;
+
+        this.store = store;
+
+        this.mapper = mapper;
+
+        this.ids = store.idsAfter(cursor);
+
+        this.limit = limit;
+
+        this.fields = fields;
+
+        this.pretty = ResponseWriter.pretty(context);
+    }
+
+    //An empty store is an empty page like any other, the response has the same shape whether or not there are rows
+    static <T> void write(RoutingContext context, Store<T> store, Function<T, JsonObject> mapper, String message)
+    {
+        Long cursor;
+
+        int limit;
+
+        try
+        {
+            cursor = context.queryParam("cursor").isEmpty() ? null : Long.parseLong(context.queryParam("cursor").getFirst());
+
+            limit = context.queryParam("limit").isEmpty() ? Constants.PAGE_LIMIT : Integer.parseInt(context.queryParam("limit").getFirst());
+        }
+        catch (NumberFormatException exception)
+        {
+            limit = -1;
+
+            cursor = null;
+        }
+
+        if (limit < 1 || limit > Constants.PAGE_MAX_LIMIT)
+        {
+            ResponseWriter.send(context, 400, new JsonObject()
+                    .put(Constants.STATUS_CODE, 400)
+                    .put(Constants.MESSAGE, "cursor should be an ID and limit a number from 1 to " + Constants.PAGE_MAX_LIMIT));
+            return;
+        }
+
+        if (ResponseWriter.notModified(context, store))
+        {
+            return;
+        }
+
+        var fields = context.queryParam("fields").isEmpty() ? null : Set.of(context.queryParam("fields").getFirst().split(","));
+
+        new Listing<>(context, store, mapper, cursor, limit, fields).start(message);
+    }
+
+    //Same layout as encodePrettily when pretty, a row is indented one level deeper than the keys of the page
+    private String field(String name)
+    {
+        return (pretty ? "\n  " : "") + Json.encode(name) + (pretty ? " : " : ":");
+    }
+
+    private void start(String message)
+    {
+        context.response()
+                .setStatusCode(200)
+                .setChunked(true)
+                .putHeader("content-type", "application/json")
+                .write("{" + field(Constants.STATUS_CODE) + "200,"
+                        + field(Constants.MESSAGE) + Json.encode(message) + ","
+                        + field(Constants.CONTEXT) + (pretty ? "[ " : "["));
+
+        next();
+    }
+
+    //Writes the next chunk, then waits for the connection to drain or yields to other requests before the one after
+    private void next()
+    {
+        var response = context.response();
+
+        if (response.closed())
+        {
+            return;
+        }
+
+        var buffer = Buffer.buffer();
+
+        while (count < limit && ids.hasNext() && buffer.length() < Constants.RESPONSE_CHUNK_SIZE)
+        {
+            var id = ids.next();
+
+            var row = store.get(id);
+
+            if (row == null)
+            {
+                continue; //Removed since the iteration started
+            }
+
+            if (count++ > 0)
+            {
+                buffer.appendString(pretty ? ", " : ",");
+            }
+
+            var projected = project(mapper.apply(row));
+
+            if (pretty)
+            {
+                buffer.appendString(projected.encodePrettily().replace("\n", "\n  "));
+            }
+            else
+            {
+                buffer.appendBuffer(projected.toBuffer());
+            }
+
+            last = id;
+        }
+
+        if (count < limit && ids.hasNext())
+        {
+            response.write(buffer);
+
+            if (response.writeQueueFull())
+            {
+                response.drainHandler(v ->
+                {
+                    response.drainHandler(null);
+
+                    next();
+                });
+            }
+            else
+            {
+                context.vertx().runOnContext(v -> next());
+            }
+            return;
+        }
+
+        buffer.appendString(pretty && count > 0 ? " ]" : "]");
+
+        //Only a full page can have rows after it
+        if (count == limit && ids.hasNext())
+        {
+            buffer.appendString("," + field(Constants.NEXT_CURSOR) + last);
+        }
+
+        response.end(buffer.appendString(pretty ? "\n}" : "}"));
+    }
+
+    private JsonObject project(JsonObject row)
+    {
+        if (fields == null)
+        {
+            return row;
+        }
+
+        var projected = new JsonObject();
+
+        for (var field : fields)
+        {
+            if (row.containsKey(field))
+            {
+                projected.put(field, row.getValue(field));
+            }
+        }
+        return projected;
+    }
+}
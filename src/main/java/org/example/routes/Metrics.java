@@ -0,0 +1,112 @@
+package org.example.routes;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import org.example.Constants;
+import org.example.Main;
+import org.example.util.Helper;
+import org.example.util.ResponseWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.example.Main.objects;
+
+public class Metrics
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(Metrics.class);
+
+    public void route(Router metricsRouter)
+    {
+        try
+        {
+            metricsRouter.get("/:objectId").handler(this::get);
+        }
+        catch (Exception exception)
+        {
+            LOGGER.error("Error in metrics routing", exception);
+        }
+    }
+
+    //Stored metrics of an object between from and to (epoch seconds, last hour by default), optionally of one metric group
+    //A series has a point per step (seconds) at most, and never more than Constants.TSDB_MAX_POINTS points, the step applied is in the reply
+    public void get(RoutingContext context)
+    {
+        var objectID = context.pathParam("objectId");
+
+        if (Helper.validateField(objectID))
+        {
+            ResponseWriter.send(context, 404, new JsonObject()
+                    .put(Constants.STATUS_CODE, 404)
+                    .put(Constants.MESSAGE, "Please enter a valid object ID"));
+            return;
+        }
+        try
+        {
+            var id = Long.parseLong(objectID);
+
+            if (!objects.containsKey(id))
+            {
+                ResponseWriter.send(context, 404, new JsonObject()
+                        .put(Constants.STATUS_CODE, 404)
+                        .put(Constants.MESSAGE, "Object not found for this ID"));
+                return;
+            }
+
+            var to = context.queryParam("to").isEmpty() ? System.currentTimeMillis() / 1000 : Long.parseLong(context.queryParam("to").getFirst());
+
+            var from = context.queryParam("from").isEmpty() ? to - Constants.TSDB_DEFAULT_RANGE : Long.parseLong(context.queryParam("from").getFirst());
+
+            if (from > to)
+            {
+                ResponseWriter.send(context, 400, new JsonObject()
+                        .put(Constants.STATUS_CODE, 400)
+                        .put(Constants.MESSAGE, "from must not be after to"));
+                return;
+            }
+
+            var request = new JsonObject()
+                    .put("object.id", id)
+                    .put("from", from)
+                    .put("to", to);
+
+            if (!context.queryParam("step").isEmpty())
+            {
+                var step = Long.parseLong(context.queryParam("step").getFirst());
+
+                if (step <= 0)
+                {
+                    ResponseWriter.send(context, 400, new JsonObject()
+                            .put(Constants.STATUS_CODE, 400)
+                            .put(Constants.MESSAGE, "step must be a positive number of seconds"));
+                    return;
+                }
+
+                request.put("step", step);
+            }
+
+            if (!context.queryParam("group").isEmpty())
+            {
+                request.put("metric.group.name", context.queryParam("group").getFirst());
+            }
+
+            Main.vertx.eventBus().<JsonObject>request(Constants.METRIC_QUERY, request)
+
+                    .onSuccess(reply -> ResponseWriter.send(context, 200, new JsonObject()
+                            .put(Constants.STATUS_CODE, 200)
+                            .put(Constants.MESSAGE, "Metrics fetched successfully")
+                            .put(Constants.CONTEXT, reply.body())))
+
+                    .onFailure(error -> ResponseWriter.send(context, 500, new JsonObject()
+                            .put(Constants.STATUS_CODE, 500)
+                            .put(Constants.MESSAGE, "Server error in fetching metrics")
+                            .put(Constants.ERROR, error.getMessage())));
+        }
+        catch (NumberFormatException exception)
+        {
+            ResponseWriter.send(context, 400, new JsonObject()
+                    .put(Constants.STATUS_CODE, 400)
+                    .put(Constants.MESSAGE, "Please enter valid object ID, epoch second from and to, and step in seconds"));
+        }
+    }
+}
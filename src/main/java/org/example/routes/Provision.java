@@ -4,11 +4,16 @@ import org.example.Main;
 import org.example.util.Helper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
+import org.example.database.DiscoveryRow;
+import org.example.database.MetricRow;
+import org.example.database.ObjectRow;
 import org.example.database.QueryUtility;
 import org.example.Constants;
+import org.example.util.ResponseWriter;
 
 import java.util.*;
 
@@ -41,6 +46,8 @@ public class Provision
     {
         try
         {
+            provisionRouter.post("/").handler(this::provisionAll);
+
             provisionRouter.post("/:id").handler(this::provision);
         }
         catch(Exception exception)
@@ -55,11 +62,9 @@ public class Provision
 
         if (Helper.validateField(discoveryID))
         {
-            context.response()
-                    .setStatusCode(404)
-                    .end(new JsonObject()
-                            .put(Constants.STATUS_CODE, 404)
-                            .put(Constants.MESSAGE, "Please enter a valid discovery ID").encodePrettily());
+            ResponseWriter.send(context, 404, new JsonObject()
+                    .put(Constants.STATUS_CODE, 404)
+                    .put(Constants.MESSAGE, "Please enter a valid discovery ID"));
             return;
         }
         try
@@ -68,92 +73,175 @@ public class Provision
 
             var device = discoveries.get(id);
 
-            if(Helper.isProvisioned(device.getString("ip")))
+            if (device == null)
             {
-                context.response()
-                        .setStatusCode(404)
-                        .end(new JsonObject()
-                                .put(Constants.STATUS_CODE, 404)
-                                .put(Constants.MESSAGE, "Device with this IP is already provisioned").encodePrettily());
+                ResponseWriter.send(context, 404, new JsonObject()
+                        .put(Constants.STATUS_CODE, 404)
+                        .put(Constants.MESSAGE, "Discovery not found for this ID"));
 
                 return;
             }
 
-            // Proceed to insert the device into the 'objects' table
-            QueryUtility.getInstance().insert(Constants.OBJECTS, new JsonObject()
-                            .put("credential_profile", device.getLong("credential_profile"))
-                            .put("ip", device.getString("ip"))
-                            .put("port",device.getInteger("port"))
-                            .put("hostname", device.getString("hostname"))
-                            .put("device_type",device.getString("device_type")))
-                    .map(insertedId ->
-                    {
-                        Helper.insertInMap(objects,insertedId,new JsonObject()
-                                .put("object_id",insertedId)
-                                .put("credential_profile", device.getLong("credential_profile"))
-                                .put("ip", device.getString("ip"))
-                                .put("port",device.getInteger("port"))
-                                .put("hostname", device.getString("hostname"))
-                                .put("device_type",device.getString("device_type")));
+            if(Helper.isProvisioned(device.ip()))
+            {
+                ResponseWriter.send(context, 404, new JsonObject()
+                        .put(Constants.STATUS_CODE, 404)
+                        .put(Constants.MESSAGE, "Device with this IP is already provisioned"));
 
-                        device.put("object_id", insertedId);
+                return;
+            }
 
-                        return device;
-                    })
-                    .compose(discoveryInfo ->
-                    {
-                        // Attaching metrics for the provisioned object
-                        var metricFutures = new ArrayList<Future<Long>>();
-
-                        (Objects.equals(discoveryInfo.getString("device_type"), "Linux") ? linuxMetrics : snmpMetrics).forEach((key, value) ->
-                        {
-                            metricFutures.add(QueryUtility.getInstance().insert(Constants.METRICS, new JsonObject()
-                                    .put("metric_group_name", key)
-                                    .put("metric_poll_time", value)
-                                    .put("metric_object", discoveryInfo.getLong("object_id")))
-                                    .map(metricID->
-                                    {
-                                        Helper.insertInMap(metrics,metricID,new JsonObject()
-                                                .put("metric_id",metricID)
-                                                .put("metric_group_name", key)
-                                                .put("metric_poll_time", value)
-                                                .put("metric_object", discoveryInfo.getLong("object_id")));
-
-                                        return metricID;
-                            }));
-                        });
-
-                        //If attaching any metric fails , no need to proceed further
-                        return Future.all(metricFutures).map(discoveryInfo);
-                    })
+            provisionDevices(List.of(device))
                     .onSuccess(result ->
                     {
-                        Main.vertx.eventBus().send(Constants.OBJECT_PROVISION,new JsonObject()
-                                .put("object_id",result.getLong("object_id")));
-
-                        context.response()
-                                .setStatusCode(201)
-                                .end(new JsonObject()
-                                        .put(Constants.STATUS_CODE,201)
-                                        .put(Constants.MESSAGE,"Device provisioned successfully")
-                                        .put(Constants.CONTEXT,new JsonObject()
-                                                .put("object.id", result.getLong("object_id"))).encodePrettily());
+                        ResponseWriter.send(context, 201, new JsonObject()
+                                .put(Constants.STATUS_CODE,201)
+                                .put(Constants.MESSAGE,"Device provisioned successfully")
+                                .put(Constants.CONTEXT,new JsonObject()
+                                        .put("object.id", result.getFirst())));
                     })
-                    .onFailure(error -> context.response()
-                            .setStatusCode(400)
-                            .end(new JsonObject()
-                                    .put(Constants.STATUS_CODE,400)
-                                    .put(Constants.MESSAGE,"Device cannot be provisioned")
-                                    .put(Constants.ERROR,error.getMessage()).encodePrettily()));
+                    .onFailure(error -> ResponseWriter.send(context, 400, new JsonObject()
+                            .put(Constants.STATUS_CODE,400)
+                            .put(Constants.MESSAGE,"Device cannot be provisioned")
+                            .put(Constants.ERROR,error.getMessage())));
+        }
+        catch (Exception exception)
+        {
+            ResponseWriter.send(context, 500, new JsonObject()
+                    .put(Constants.STATUS_CODE,500)
+                    .put(Constants.MESSAGE,"Server error in provisioning device")
+                    .put(Constants.ERROR,exception.getMessage()));
+        }
+    }
+
+    //Provisions a list of discovery IDs in one transaction, either all of them are provisioned or none
+    private void provisionAll(RoutingContext context)
+    {
+        try
+        {
+            var requestBody = context.body().asJsonObject();
+
+            var discoveryIDs = requestBody == null ? null : requestBody.getJsonArray("discovery.ids");
+
+            if (discoveryIDs == null || discoveryIDs.isEmpty())
+            {
+                ResponseWriter.send(context, 400, new JsonObject()
+                        .put(Constants.STATUS_CODE, 400)
+                        .put(Constants.MESSAGE, "Please enter discovery.ids to provision"));
+                return;
+            }
+
+            var devices = new ArrayList<DiscoveryRow>();
+
+            var errors = new JsonObject();
+
+            var ips = new HashSet<String>();
+
+            for (int i = 0; i < discoveryIDs.size(); i++)
+            {
+                var id = discoveryIDs.getLong(i);
+
+                var device = discoveries.get(id);
+
+                if (device == null)
+                {
+                    errors.put(String.valueOf(id), "Discovery not found for this ID");
+                }
+                else if (Helper.isProvisioned(device.ip()) || !ips.add(device.ip()))
+                {
+                    errors.put(String.valueOf(id), "Device with this IP is already provisioned");
+                }
+                else
+                {
+                    devices.add(device);
+                }
+            }
+
+            if (!errors.isEmpty())
+            {
+                ResponseWriter.send(context, 400, new JsonObject()
+                        .put(Constants.STATUS_CODE, 400)
+                        .put(Constants.MESSAGE, "Devices cannot be provisioned")
+                        .put(Constants.ERROR, errors));
+                return;
+            }
+
+            provisionDevices(devices)
+                    .onSuccess(result -> ResponseWriter.send(context, 201, new JsonObject()
+                            .put(Constants.STATUS_CODE, 201)
+                            .put(Constants.MESSAGE, "Devices provisioned successfully")
+                            .put(Constants.CONTEXT, new JsonObject()
+                                    .put("object.ids", new JsonArray(result)))))
+                    .onFailure(error -> ResponseWriter.send(context, 400, new JsonObject()
+                            .put(Constants.STATUS_CODE, 400)
+                            .put(Constants.MESSAGE, "Devices cannot be provisioned")
+                            .put(Constants.ERROR, error.getMessage())));
         }
         catch (Exception exception)
         {
-            context.response()
-                    .setStatusCode(500)
-                    .end(new JsonObject()
-                            .put(Constants.STATUS_CODE,500)
-                            .put(Constants.MESSAGE,"Server error in checking if the device is up or not")
-                            .put(Constants.ERROR,exception.getCause().getMessage()).encodePrettily());
+            ResponseWriter.send(context, 500, new JsonObject()
+                    .put(Constants.STATUS_CODE, 500)
+                    .put(Constants.MESSAGE, "Server error in provisioning devices")
+                    .put(Constants.ERROR, exception.getMessage()));
         }
     }
+
+    //Inserts the objects and all their metrics with one batch each inside a single transaction, returns the object IDs
+    private Future<List<Long>> provisionDevices(List<DiscoveryRow> devices)
+    {
+        var objectRows = new ArrayList<JsonObject>();
+
+        devices.forEach(device -> objectRows.add(new JsonObject()
+                .put("credential_profile", device.credentialProfile())
+                .put("ip", device.ip())
+                .put("port",device.port())
+                .put("hostname", device.hostname())
+                .put("device_type",device.deviceType())));
+
+        var metricRows = new ArrayList<JsonObject>();
+
+        var metricIDs = new ArrayList<Long>();
+
+        return QueryUtility.getInstance().transaction(connection ->
+                        QueryUtility.getInstance().insertBatch(connection, Constants.OBJECTS, objectRows)
+                                .compose(objectIDs ->
+                                {
+                                    // Attaching metrics for the provisioned objects
+                                    for (int i = 0; i < objectIDs.size(); i++)
+                                    {
+                                        var objectID = objectIDs.get(i);
+
+                                        (Objects.equals(objectRows.get(i).getString("device_type"), "Linux") ? linuxMetrics : snmpMetrics).forEach((key, value) ->
+                                                metricRows.add(new JsonObject()
+                                                        .put("metric_group_name", key)
+                                                        .put("metric_poll_time", value)
+                                                        .put("metric_object", objectID)));
+                                    }
+
+                                    //If attaching any metric fails , the objects are rolled back as well
+                                    return QueryUtility.getInstance().insertBatch(connection, Constants.METRICS, metricRows)
+                                            .map(ids ->
+                                            {
+                                                metricIDs.addAll(ids);
+
+                                                return objectIDs;
+                                            });
+                                }))
+                .onSuccess(objectIDs ->
+                {
+                    //Caches are only touched once the transaction is committed
+                    for (int i = 0; i < metricIDs.size(); i++)
+                    {
+                        Helper.insertInMap(metrics, metricIDs.get(i), MetricRow.fromJson(metricRows.get(i).put("metric_id", metricIDs.get(i))));
+                    }
+
+                    for (int i = 0; i < objectIDs.size(); i++)
+                    {
+                        Helper.insertInMap(objects, objectIDs.get(i), ObjectRow.fromJson(objectRows.get(i).put("object_id", objectIDs.get(i))));
+
+                        Main.vertx.eventBus().publish(Constants.OBJECT_PROVISION,new JsonObject()
+                                .put("object_id",objectIDs.get(i)));
+                    }
+                });
+    }
 }
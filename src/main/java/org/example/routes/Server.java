@@ -2,15 +2,23 @@ package org.example.routes;
 
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Promise;
+import io.vertx.core.http.HttpServerOptions;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.handler.BodyHandler;
 import org.example.Main;
 import org.example.Constants;
 import org.example.database.QueryUtility;
+import org.example.poll.SchedulingLag;
+import org.example.util.ResponseWriter;
+
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Server extends AbstractVerticle
 {
+    //Instances that are listening, the database client is shared so only the last one to stop closes it
+    private static final AtomicInteger running = new AtomicInteger();
+
     public void start(Promise<Void> startPromise)
     {
         var router = Router.router(Main.vertx);
@@ -32,22 +40,38 @@ public class Server extends AbstractVerticle
         //C)Provision Module : Provision Router for handling Provision routes
         var provisionRouter = Router.router(Main.vertx);
 
-        router.route("/api/v1/provision/*").subRouter(provisionRouter);
+        router.route("/api/v1/provision/*").handler(BodyHandler.create()).subRouter(provisionRouter);
 
         new Provision().route(provisionRouter);
 
-        router.get("/api/v1/").handler(context -> context.response()
-                .setStatusCode(200)
-                .end(new JsonObject()
-                        .put(Constants.STATUS_CODE,200)
-                        .put(Constants.MESSAGE,"Welcome to Homepage")
-                        .put(Constants.CONTEXT,"Root endpoint of API").encodePrettily()));
+        //D)Metrics Module : Range queries on the stored metric history
+        var metricsRouter = Router.router(Main.vertx);
 
-        router.get("/notfound").handler(context -> context.response().setStatusCode(404).
-                end(new JsonObject()
-                        .put(Constants.STATUS_CODE,404)
-                        .put(Constants.MESSAGE,"Not found")
-                        .put(Constants.CONTEXT,"Requested endpoint doesn't exist").encodePrettily()));
+        router.route("/api/v1/metrics/*").subRouter(metricsRouter);
+
+        new Metrics().route(metricsRouter);
+
+        //E)Alert Module : Alert rules evaluated on every poll result
+        var alertsRouter = Router.router(Main.vertx);
+
+        router.route("/api/v1/alerts/*").handler(BodyHandler.create()).subRouter(alertsRouter);
+
+        new Alerts().route(alertsRouter);
+
+        router.get("/api/v1/").handler(context -> ResponseWriter.send(context, 200, new JsonObject()
+                .put(Constants.STATUS_CODE,200)
+                .put(Constants.MESSAGE,"Welcome to Homepage")
+                .put(Constants.CONTEXT,"Root endpoint of API")));
+
+        router.get("/api/v1/scheduler/stats").handler(context -> ResponseWriter.send(context, 200, new JsonObject()
+                .put(Constants.STATUS_CODE,200)
+                .put(Constants.MESSAGE,"Scheduler statistics fetched successfully")
+                .put(Constants.CONTEXT, SchedulingLag.toJson())));
+
+        router.get("/notfound").handler(context -> ResponseWriter.send(context, 404, new JsonObject()
+                .put(Constants.STATUS_CODE,404)
+                .put(Constants.MESSAGE,"Not found")
+                .put(Constants.CONTEXT,"Requested endpoint doesn't exist")));
 
         router.route().failureHandler(context ->
         {
@@ -57,11 +81,10 @@ public class Server extends AbstractVerticle
             }
             else
             {
-                context.response().setStatusCode(500).
-                        end(new JsonObject()
-                                .put(Constants.STATUS_CODE,404)
-                                .put(Constants.MESSAGE,"Error occurred")
-                                .put(Constants.ERROR, context.failure()).encodePrettily());
+                ResponseWriter.send(context, 500, new JsonObject()
+                        .put(Constants.STATUS_CODE,404)
+                        .put(Constants.MESSAGE,"Error occurred")
+                        .put(Constants.ERROR, context.failure()));
             }
         });
 
@@ -70,7 +93,11 @@ public class Server extends AbstractVerticle
             context.fail(404); // Manually trigger a 404 for unmatched routes
         });
 
-        vertx.createHttpServer()
+        //Responses are gzip or deflate compressed when the client accepts it, HTTP/2 is also served without TLS (h2c)
+        vertx.createHttpServer(new HttpServerOptions()
+                        .setCompressionSupported(true)
+                        .setCompressionLevel(Constants.HTTP_COMPRESSION_LEVEL)
+                        .setHttp2ClearTextEnabled(true))
 
                 .exceptionHandler(handler->startPromise.fail(handler.getCause().getMessage()))
 
@@ -81,6 +108,8 @@ public class Server extends AbstractVerticle
 
                     if(http.succeeded())
                     {
+                        running.incrementAndGet();
+
                         startPromise.complete();
                     }
                     else
@@ -91,7 +120,10 @@ public class Server extends AbstractVerticle
     }
     public void stop(Promise<Void> stopPromise)
     {
-        QueryUtility.getInstance().closeClient();
+        if (running.decrementAndGet() == 0)
+        {
+            QueryUtility.getInstance().closeClient();
+        }
 
         stopPromise.complete();
     }
@@ -0,0 +1,229 @@
+package org.example.sevices;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Promise;
+import io.vertx.core.json.JsonObject;
+import org.example.Constants;
+import org.example.database.AlertRuleRow;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.example.Main.alertRules;
+import static org.example.Main.objects;
+
+//Evaluates alert rules on every poll result as it arrives, only the rules of the result's metric group that cover its object
+//are looked at and a rate rule keeps just the previous sample of each object, so the cost of a result does not depend on
+//history, other groups or the rules of other objects
+public class AlertEngine extends AbstractVerticle
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(AlertEngine.class);
+
+    private static class State
+    {
+        private long timestamp = -1;
+
+        private double value;
+
+        private boolean active;
+    }
+
+    //By object then rule, a result only touches the small map of its own object however many objects there are
+    private final Map<Long, Map<Long, State>> states = new HashMap<>();
+
+    @Override
+    public void start(Promise<Void> startPromise)
+    {
+        vertx.eventBus().<JsonObject>localConsumer(Constants.POLL_RESULT, message ->
+        {
+            try
+            {
+                evaluate(message.body());
+            }
+            catch (Exception exception)
+            {
+                LOGGER.error("Error evaluating alert rules: {}", exception.getMessage());
+            }
+        });
+
+        //State of deleted rules and objects
+        vertx.setPeriodic(Constants.ALERT_CLEANUP_INTERVAL, id -> states.entrySet().removeIf(entry ->
+        {
+            entry.getValue().keySet().removeIf(ruleId -> !alertRules.containsKey(ruleId));
+
+            return entry.getValue().isEmpty() || !objects.containsKey(entry.getKey());
+        }));
+
+        startPromise.complete();
+    }
+
+    void evaluate(JsonObject data)
+    {
+        var metrics = data.getJsonObject("metrics");
+
+        var ids = objects.find("ip", metrics.getString("ip"));
+
+        var result = metrics.getJsonObject("result");
+
+        if (ids.isEmpty() || result == null)
+        {
+            return;
+        }
+
+        var objectId = ids.iterator().next();
+
+        var timestamp = Long.parseLong(data.getString("timestamp"));
+
+        //Results of a coalesced poll are keyed by group name
+        if (data.containsKey("metric.groups"))
+        {
+            for (var group : data.getJsonArray("metric.groups"))
+            {
+                if (result.getValue((String) group) instanceof JsonObject groupResult)
+                {
+                    evaluate(objectId, (String) group, groupResult, timestamp);
+                }
+            }
+        }
+        else
+        {
+            evaluate(objectId, data.getString("metric.group.name"), result, timestamp);
+        }
+    }
+
+    //Rules of the whole group and rules of just this object, rules scoped to other objects are never looked at
+    private void evaluate(long objectId, String group, JsonObject result, long timestamp)
+    {
+        var objectStates = states.computeIfAbsent(objectId, key -> new HashMap<>());
+
+        for (var ruleId : alertRules.find("scope", new AlertRuleRow.Scope(group, null)))
+        {
+            evaluate(ruleId, objectId, objectStates, result, timestamp);
+        }
+
+        for (var ruleId : alertRules.find("scope", new AlertRuleRow.Scope(group, objectId)))
+        {
+            evaluate(ruleId, objectId, objectStates, result, timestamp);
+        }
+    }
+
+    private void evaluate(long ruleId, long objectId, Map<Long, State> objectStates, JsonObject result, long timestamp)
+    {
+        var rule = alertRules.get(ruleId);
+
+        if (rule == null)
+        {
+            return;
+        }
+
+        var value = lookup(result, rule.metric());
+
+        if (value == null)
+        {
+            return;
+        }
+
+        var state = objectStates.computeIfAbsent(ruleId, key -> new State());
+
+        if (timestamp <= state.timestamp)
+        {
+            return;
+        }
+
+        var previousTimestamp = state.timestamp;
+
+        var previousValue = state.value;
+
+        state.timestamp = timestamp;
+
+        state.value = value;
+
+        double observed;
+
+        if (AlertRuleRow.RATE.equals(rule.ruleType()))
+        {
+            //First sample only sets the baseline
+            if (previousTimestamp < 0)
+            {
+                return;
+            }
+            observed = (value - previousValue) / (timestamp - previousTimestamp);
+        }
+        else
+        {
+            observed = value;
+        }
+
+        var breached = rule.breached(observed);
+
+        //Only changes are reported, a rule that stays breached does not raise again on every poll
+        if (breached != state.active)
+        {
+            state.active = breached;
+
+            notify(rule, objectId, observed, timestamp, breached);
+        }
+    }
+
+    private void notify(AlertRuleRow rule, long objectId, double observed, long timestamp, boolean raised)
+    {
+        var alert = new JsonObject()
+                .put("rule.id", rule.ruleId())
+                .put("rule.name", rule.ruleName())
+                .put("severity", rule.severity())
+                .put("object.id", objectId)
+                .put("ip", objects.get(objectId) == null ? null : objects.get(objectId).ip())
+                .put("metric.group.name", rule.metricGroupName())
+                .put("metric", rule.metric())
+                .put("value", observed)
+                .put("threshold", rule.threshold())
+                .put("state", raised ? "raised" : "cleared")
+                .put("timestamp", timestamp);
+
+        if (raised)
+        {
+            LOGGER.warn("Alert raised: {}", alert.encode());
+        }
+        else
+        {
+            LOGGER.info("Alert cleared: {}", alert.encode());
+        }
+
+        vertx.eventBus().publish(Constants.ALERT, alert);
+    }
+
+    //Dotted path into the result, numbers and numeric strings count
+    private static Double lookup(JsonObject result, String path)
+    {
+        Object value = result;
+
+        for (var part : path.split("\\."))
+        {
+            if (!(value instanceof JsonObject object))
+            {
+                return null;
+            }
+            value = object.getValue(part);
+        }
+
+        if (value instanceof Number number)
+        {
+            return number.doubleValue();
+        }
+
+        if (value instanceof String text)
+        {
+            try
+            {
+                return Double.parseDouble(text.trim());
+            }
+            catch (NumberFormatException exception)
+            {
+                return null;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,350 @@
+package org.example.sevices;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.json.impl.JsonUtil;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.function.Consumer;
+
+//Length prefixed records: varint payload length, then ip, timestamp and the result map in a tagged binary encoding
+//Values are what a JsonObject holds: whole numbers that fit a long are read back as Long, other numbers as Double, except
+//BigInteger beyond a long and BigDecimal which are written as their exact decimal string instead of a lossy double
+//Instant, enums and binary become strings as in JSON text, any other type is rejected with IllegalArgumentException
+public class BinaryRecordFormat implements RecordFormat
+{
+    public static final BinaryRecordFormat INSTANCE = new BinaryRecordFormat();
+
+    private static final byte NULL = 0;
+
+    private static final byte FALSE = 1;
+
+    private static final byte TRUE = 2;
+
+    private static final byte INTEGER = 3;
+
+    private static final byte DOUBLE = 4;
+
+    private static final byte STRING = 5;
+
+    private static final byte ARRAY = 6;
+
+    private static final byte OBJECT = 7;
+
+    private BinaryRecordFormat()
+    {
+
+    }
+
+    @Override
+    public String extension()
+    {
+        return "bin";
+    }
+
+    @Override
+    public Buffer encode(JsonObject record)
+    {
+        var payload = Buffer.buffer();
+
+        writeString(payload, record.getString("ip"));
+
+        writeVarLong(payload, record.getLong("timestamp", 0L));
+
+        writeValue(payload, record.getJsonObject("result"));
+
+        var buffer = Buffer.buffer(payload.length() + 5);
+
+        writeVarLong(buffer, payload.length());
+
+        return buffer.appendBuffer(payload);
+    }
+
+    @Override
+    public Buffer separator()
+    {
+        return Buffer.buffer();
+    }
+
+    @Override
+    public RecordReader reader()
+    {
+        return new RecordReader()
+        {
+            private Buffer pending = Buffer.buffer();
+
+            private long consumed; //Bytes already dropped from pending
+
+            private long position;
+
+            @Override
+            public void feed(Buffer chunk, Consumer<JsonObject> handler)
+            {
+                pending.appendBuffer(chunk);
+
+                var cursor = new Cursor(pending);
+
+                while (true)
+                {
+                    var start = cursor.position;
+
+                    var length = cursor.tryReadVarLong();
+
+                    //Either the length prefix or the payload is not complete yet
+                    if (length < 0 || cursor.position + length > pending.length())
+                    {
+                        cursor.position = start;
+
+                        break;
+                    }
+
+                    var end = cursor.position + (int) length;
+
+                    var record = new JsonObject()
+                            .put("ip", cursor.readString())
+                            .put("timestamp", cursor.readVarLong())
+                            .put("result", cursor.readValue());
+
+                    cursor.position = end;
+
+                    position = consumed + end;
+
+                    handler.accept(record);
+                }
+
+                if (cursor.position > 0)
+                {
+                    pending = pending.getBuffer(cursor.position, pending.length());
+
+                    consumed += cursor.position;
+                }
+            }
+
+            @Override
+            public void end(Consumer<JsonObject> handler)
+            {
+                if (pending.length() > 0)
+                {
+                    throw new IllegalStateException("Truncated record of " + pending.length() + " bytes at end of file");
+                }
+            }
+
+            @Override
+            public long position()
+            {
+                return position;
+            }
+        };
+    }
+
+    private static void writeValue(Buffer buffer, Object value)
+    {
+        switch (value)
+        {
+            case null -> buffer.appendByte(NULL);
+
+            case Boolean bool -> buffer.appendByte(bool ? TRUE : FALSE);
+
+            case Integer number -> writeInteger(buffer, number);
+
+            case Long number -> writeInteger(buffer, number);
+
+            case Short number -> writeInteger(buffer, number);
+
+            case Byte number -> writeInteger(buffer, number);
+
+            case Double number -> buffer.appendByte(DOUBLE).appendDouble(number);
+
+            case Float number -> buffer.appendByte(DOUBLE).appendDouble(number);
+
+            case BigInteger number when number.bitLength() < 64 -> writeInteger(buffer, number.longValue());
+
+            case BigInteger number -> writeString(buffer.appendByte(STRING), number.toString());
+
+            case BigDecimal number -> writeString(buffer.appendByte(STRING), number.toPlainString());
+
+            case JsonObject object ->
+            {
+                buffer.appendByte(OBJECT);
+
+                writeVarLong(buffer, object.size());
+
+                object.forEach(entry ->
+                {
+                    writeString(buffer, entry.getKey());
+
+                    writeValue(buffer, entry.getValue());
+                });
+            }
+
+            case JsonArray array ->
+            {
+                buffer.appendByte(ARRAY);
+
+                writeVarLong(buffer, array.size());
+
+                array.forEach(element -> writeValue(buffer, element));
+            }
+
+            case CharSequence text -> writeString(buffer.appendByte(STRING), text.toString());
+
+            case Enum<?> constant -> writeString(buffer.appendByte(STRING), constant.name());
+
+            case Instant instant -> writeString(buffer.appendByte(STRING), DateTimeFormatter.ISO_INSTANT.format(instant));
+
+            case byte[] bytes -> writeString(buffer.appendByte(STRING), JsonUtil.BASE64_ENCODER.encodeToString(bytes));
+
+            case Buffer bytes -> writeString(buffer.appendByte(STRING), JsonUtil.BASE64_ENCODER.encodeToString(bytes.getBytes()));
+
+            default -> throw new IllegalArgumentException("Cannot encode value of type " + value.getClass().getName());
+        }
+    }
+
+    private static void writeInteger(Buffer buffer, long value)
+    {
+        buffer.appendByte(INTEGER);
+
+        //Zigzag so that small negative numbers stay short
+        writeVarLong(buffer, (value << 1) ^ (value >> 63));
+    }
+
+    private static void writeString(Buffer buffer, String value)
+    {
+        var bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+
+        writeVarLong(buffer, bytes.length);
+
+        buffer.appendBytes(bytes);
+    }
+
+    private static void writeVarLong(Buffer buffer, long value)
+    {
+        while ((value & ~0x7FL) != 0)
+        {
+            buffer.appendByte((byte) ((value & 0x7F) | 0x80));
+
+            value >>>= 7;
+        }
+        buffer.appendByte((byte) value);
+    }
+
+    private static class Cursor
+    {
+        private final Buffer buffer;
+
+        private int position;
+
+        private Cursor(Buffer buffer)
+        {
+            this.buffer = buffer;
+        }
+
+        //Only used for length prefixes, returns -1 if the buffer ends in the middle of the varint
+        private long tryReadVarLong()
+        {
+            long value = 0;
+
+            for (int shift = 0; position < buffer.length(); shift += 7)
+            {
+                var current = buffer.getByte(position++);
+
+                value |= (long) (current & 0x7F) << shift;
+
+                if ((current & 0x80) == 0)
+                {
+                    return value;
+                }
+            }
+            return -1;
+        }
+
+        private long readVarLong()
+        {
+            long value = 0;
+
+            for (int shift = 0; position < buffer.length(); shift += 7)
+            {
+                var current = buffer.getByte(position++);
+
+                value |= (long) (current & 0x7F) << shift;
+
+                if ((current & 0x80) == 0)
+                {
+                    return value;
+                }
+            }
+            throw new IllegalStateException("Corrupt record at offset " + position);
+        }
+
+        private String readString()
+        {
+            var length = (int) readVarLong();
+
+            var value = buffer.getString(position, position + length, "UTF-8");
+
+            position += length;
+
+            return value;
+        }
+
+        private Object readValue()
+        {
+            var tag = buffer.getByte(position++);
+
+            switch (tag)
+            {
+                case NULL:
+                    return null;
+
+                case FALSE:
+                    return false;
+
+                case TRUE:
+                    return true;
+
+                case INTEGER:
+                    var zigzag = readVarLong();
+
+                    return (zigzag >>> 1) ^ -(zigzag & 1);
+
+                case DOUBLE:
+                    var number = buffer.getDouble(position);
+
+                    position += 8;
+
+                    return number;
+
+                case STRING:
+                    return readString();
+
+                case ARRAY:
+                    var array = new JsonArray();
+
+                    for (long i = readVarLong(); i > 0; i--)
+                    {
+                        array.add(readValue());
+                    }
+                    return array;
+
+                case OBJECT:
+                    var object = new JsonObject();
+
+                    for (long i = readVarLong(); i > 0; i--)
+                    {
+                        var key = readString();
+
+                        object.put(key, readValue());
+                    }
+                    return object;
+
+                default:
+                    throw new IllegalStateException("Unknown value tag " + tag + " at offset " + (position - 1));
+            }
+        }
+    }
+}
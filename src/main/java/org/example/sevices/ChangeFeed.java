@@ -0,0 +1,302 @@
+package org.example.sevices;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.pgclient.pubsub.PgSubscriber;
+import io.vertx.sqlclient.Tuple;
+import org.example.Constants;
+import org.example.Main;
+import org.example.database.AlertRuleRow;
+import org.example.database.CredentialRow;
+import org.example.database.DiscoveryRow;
+import org.example.database.MetricRow;
+import org.example.database.ObjectRow;
+import org.example.database.QueryUtility;
+import org.example.database.Store;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import static org.example.Main.alertRules;
+import static org.example.Main.credentials;
+import static org.example.Main.discoveries;
+import static org.example.Main.metrics;
+import static org.example.Main.objects;
+
+//Keeps the caches in step with changes made by other nodes, every table notifies the IDs of its changed rows on one channel
+//Notifications only say which row changed, the row is read again so a wide row never hits the 8000 byte payload limit of NOTIFY
+//and a newer read always wins over an older one. The feed also loads the tables, see reload
+public class ChangeFeed extends AbstractVerticle
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChangeFeed.class);
+
+    private static final String FUNCTION = """
+            CREATE OR REPLACE FUNCTION nmslite_notify() RETURNS trigger AS $$
+            BEGIN
+                PERFORM pg_notify('%s', json_build_object(
+                        'table', TG_TABLE_NAME,
+                        'operation', TG_OP,
+                        'id', to_jsonb(CASE WHEN TG_OP = 'DELETE' THEN OLD ELSE NEW END) ->> TG_ARGV[0])::text);
+                RETURN NULL;
+            END;
+            $$ LANGUAGE plpgsql
+            """.formatted(Constants.CHANGE_CHANNEL);
+
+    private static final String TRIGGER = """
+            DROP TRIGGER IF EXISTS nmslite_notify ON %1$s;
+            CREATE TRIGGER nmslite_notify AFTER INSERT OR UPDATE OR DELETE ON %1$s
+                FOR EACH ROW EXECUTE FUNCTION nmslite_notify('%2$s')
+            """;
+
+    private record Table<T>(Store<T> store, String id, Function<JsonObject, T> mapper)
+    {
+
+    }
+
+    private final Map<String, Table<?>> tables = Map.of(
+            Constants.DISCOVERIES, new Table<>(discoveries, "discovery_id", DiscoveryRow::fromJson),
+            Constants.CREDENTIALS, new Table<>(credentials, "profile_id", CredentialRow::fromJson),
+            Constants.OBJECTS, new Table<>(objects, "object_id", ObjectRow::fromJson),
+            Constants.METRICS, new Table<>(metrics, "metric_id", MetricRow::fromJson),
+            Constants.ALERT_RULES, new Table<>(alertRules, "rule_id", AlertRuleRow::fromJson));
+
+    //IDs notified but not read again yet, per table
+    private final Map<String, Set<Long>> pending = new LinkedHashMap<>();
+
+    private final Promise<Void> loaded = Promise.promise();
+
+    private PgSubscriber subscriber;
+
+    private boolean loading;
+
+    private boolean reloadAgain; //Reconnected while a load was running
+
+    private boolean reading;
+
+    @Override
+    public void start(Promise<Void> startPromise)
+    {
+        try
+        {
+            var queryUtility = QueryUtility.getInstance();
+
+            var setup = queryUtility.execute(FUNCTION);
+
+            for (var table : tables.entrySet())
+            {
+                setup = setup.compose(v -> queryUtility.execute(TRIGGER.formatted(table.getKey(), table.getValue().id())));
+            }
+
+            subscriber = queryUtility.subscriber().reconnectPolicy(retries -> (long) Constants.CHANGE_RECONNECT_INTERVAL);
+
+            var channel = subscriber.channel(Constants.CHANGE_CHANNEL);
+
+            channel.handler(this::changed);
+
+            //Also called after every reconnect, notifications sent while the connection was down are lost so the tables are read again
+            channel.subscribeHandler(v -> reload());
+
+            //Listening starts before the tables are loaded and the verticle is up once the first load is done
+            setup.compose(v -> subscriber.connect())
+                    .compose(v -> loaded.future())
+                    .onSuccess(v -> LOGGER.info("Listening for changes on {}", Constants.CHANGE_CHANNEL))
+                    .onComplete(startPromise);
+        }
+        catch (Exception exception)
+        {
+            LOGGER.error("Failed to start change feed: {}", exception.getMessage(), exception);
+
+            startPromise.fail(exception);
+        }
+    }
+
+    //Nothing orders the rows of a load against the notifications, so notifications are only collected while it runs
+    //and their rows are read again once it is done, which overrides anything older the load put in the cache
+    private void reload()
+    {
+        if (loading)
+        {
+            reloadAgain = true;
+
+            return;
+        }
+
+        if (loaded.future().isComplete())
+        {
+            LOGGER.warn("Change feed reconnected, reloading tables");
+        }
+
+        loading = true;
+
+        Main.init().<Void>mapEmpty().compose(v -> removeDeleted()).onComplete(result ->
+        {
+            loading = false;
+
+            if (result.failed())
+            {
+                LOGGER.error("Failed to reload tables: {}", result.cause().getMessage());
+
+                loaded.tryFail(result.cause());
+            }
+            else
+            {
+                loaded.tryComplete();
+            }
+
+            if (reloadAgain)
+            {
+                reloadAgain = false;
+
+                reload();
+            }
+            else
+            {
+                read();
+            }
+        });
+    }
+
+    //A load only adds rows, rows deleted while the connection was down are dropped here
+    private Future<Void> removeDeleted()
+    {
+        var removed = new ArrayList<Future<Void>>();
+
+        tables.forEach((name, table) -> removed.add(QueryUtility.getInstance()
+                .query("SELECT " + table.id() + " FROM " + name, Tuple.tuple())
+                .map(rows ->
+                {
+                    var ids = new HashSet<Long>();
+
+                    for (var i = 0; i < rows.size(); i++)
+                    {
+                        ids.add(rows.getJsonObject(i).getLong(table.id()));
+                    }
+
+                    var deleted = new ArrayList<Long>();
+
+                    table.store().forEach((id, row) ->
+                    {
+                        if (!ids.contains(id))
+                        {
+                            deleted.add(id);
+                        }
+                    });
+
+                    //A row inserted since the query was also notified, reading it again puts it back
+                    deleted.forEach(table.store()::remove);
+
+                    return null;
+                })));
+
+        return Future.all(removed).mapEmpty();
+    }
+
+    private void changed(String payload)
+    {
+        try
+        {
+            var change = new JsonObject(payload);
+
+            var name = change.getString("table");
+
+            if (tables.containsKey(name))
+            {
+                pending.computeIfAbsent(name, key -> new LinkedHashSet<>()).add(Long.parseLong(change.getString("id")));
+
+                if (!loading)
+                {
+                    read();
+                }
+            }
+        }
+        catch (Exception exception)
+        {
+            LOGGER.error("Failed to apply change {}: {}", payload, exception.getMessage());
+        }
+    }
+
+    //Reads the pending rows of one table at a time, only one read runs so a later read never lands before an earlier one
+    //Changes made by this node come back here as well, applying them again leaves the caches unchanged
+    private void read()
+    {
+        if (reading || loading || pending.isEmpty())
+        {
+            return;
+        }
+
+        var name = pending.keySet().iterator().next();
+
+        var ids = pending.remove(name);
+
+        reading = true;
+
+        read(name, tables.get(name), ids).onComplete(result ->
+        {
+            reading = false;
+
+            if (result.succeeded())
+            {
+                read();
+            }
+            else
+            {
+                LOGGER.error("Failed to read changed rows of {}: {}", name, result.cause().getMessage());
+
+                //Put back for the next attempt, newer notifications of the same rows are merged in meanwhile
+                pending.computeIfAbsent(name, key -> new LinkedHashSet<>()).addAll(ids);
+
+                vertx.setTimer(Constants.CHANGE_RECONNECT_INTERVAL, id -> read());
+            }
+        });
+    }
+
+    private <T> Future<Void> read(String name, Table<T> table, Set<Long> ids)
+    {
+        return QueryUtility.getInstance()
+                .query("SELECT * FROM " + name + " WHERE " + table.id() + " = ANY($1)", Tuple.of(ids.toArray(new Long[0])))
+                .map(rows ->
+                {
+                    var found = new HashSet<Long>();
+
+                    for (var i = 0; i < rows.size(); i++)
+                    {
+                        var row = rows.getJsonObject(i);
+
+                        var id = row.getLong(table.id());
+
+                        table.store().put(id, table.mapper().apply(row));
+
+                        found.add(id);
+                    }
+
+                    //Rows that are gone were deleted
+                    ids.stream().filter(id -> !found.contains(id)).forEach(table.store()::remove);
+
+                    //Scheduler picks up new metrics, changed poll times apply from the next poll and deleted metrics are dropped when due
+                    if (table.store() == metrics && !found.isEmpty())
+                    {
+                        vertx.eventBus().publish(Constants.METRIC_SCHEDULE, new JsonArray(new ArrayList<>(found)));
+                    }
+                    return null;
+                });
+    }
+
+    @Override
+    public void stop()
+    {
+        if (subscriber != null)
+        {
+            subscriber.close();
+        }
+    }
+}
@@ -1,34 +1,114 @@
 package org.example.sevices;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonObject;
 import org.example.Constants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.zeromq.ZContext;
 import org.zeromq.ZMQ;
+
+import java.io.InputStream;
+import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.List;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 public class FileSender extends AbstractVerticle
 {
     private static final Logger LOGGER = LoggerFactory.getLogger(FileSender.class);
 
+    private final String directory;
+
+    private final String endpoint;
+
+    private final boolean acknowledged;
+
+    private final String logPath;
+
     private ZMQ.Socket socket;
 
     private ZContext context;
 
+    //Files waiting for the sender thread, bounded so a large backlog is picked up over several scans
+    private final BlockingQueue<String> files = new ArrayBlockingQueue<>(Constants.SENDER_QUEUE_SIZE);
+
+    //Files that are queued or being sent, so the next scan does not queue them again
+    private final Set<String> queued = ConcurrentHashMap.newKeySet();
+
+    private Thread sender;
+
+    private SenderLog senderLog;
+
+    private long sequence;
+
+    //Records sent but not acknowledged yet, in sending order
+    private final Deque<long[]> unacknowledged = new ArrayDeque<>(); //{sequence, end offset in file}
+
+    private static class AcknowledgementTimeoutException extends RuntimeException
+    {
+        private static final long serialVersionUID = 1L;
+
+        private AcknowledgementTimeoutException(String message)
+        {
+            super(message);
+        }
+    }
+
+    public FileSender()
+    {
+        this(Constants.BASE_DIRECTORY, "tcp://" + Constants.IP + ":" + Constants.ZMQ_PORT, Constants.ACKNOWLEDGED_DELIVERY, Constants.SENDER_LOG_PATH);
+    }
+
+    //Lets tests point the sender at their own directory and consumer
+    FileSender(String directory, String endpoint, boolean acknowledged, String logPath)
+    {
+        this.directory = directory;
+
+        this.endpoint = endpoint;
+
+        this.acknowledged = acknowledged;
+
+        this.logPath = logPath;
+    }
+
     public void start(Promise<Void> startPromise)
     {
         try
         {
             context = new ZContext();
 
-            socket = context.createSocket(ZMQ.PUSH);
+            if (acknowledged)
+            {
+                //Consumer is expected to be a ROUTER replying with the sequence number of every record it stored
+                socket = context.createSocket(ZMQ.DEALER);
+
+                socket.setReceiveTimeOut(Constants.ACKNOWLEDGEMENT_TIMEOUT);
 
-            socket.connect("tcp://" + Constants.IP + ":" + Constants.ZMQ_PORT);
+                senderLog = new SenderLog(logPath);
+            }
+            else
+            {
+                socket = context.createSocket(ZMQ.PUSH);
+            }
+
+            socket.connect(endpoint);
+
+            //Socket is only used from this thread from now on, ZMQ sockets are not thread safe
+            sender = Thread.ofPlatform().name("file-sender").start(this::sendFiles);
+
+            //FileWriter hands every file over as soon as it is sealed
+            vertx.eventBus().<String>localConsumer(Constants.FILE_SEALED, message -> enqueue(message.body()));
+
+            //Directory is still scanned to pick up files from a previous run and files whose sending failed
+            processFiles();
 
-            // Periodically process files
             vertx.setPeriodic(Constants.DATABASE_INTERVAL, id -> processFiles());
 
             startPromise.complete();
@@ -44,19 +124,15 @@ public class FileSender extends AbstractVerticle
 
     private void processFiles()
     {
-        vertx.<List<String>>executeBlocking(promise ->
+        vertx.fileSystem().readDir(directory).onSuccess(paths ->
         {
-            try
+            for (var filePath : paths)
             {
-                promise.complete(vertx.fileSystem().readDirBlocking(Constants.BASE_DIRECTORY));
-            }
-            catch (Exception exception)
-            {
-                promise.fail(exception);
+                if (!filePath.endsWith(".part") && !enqueue(filePath))
+                {
+                    break;
+                }
             }
-        }).onSuccess(files ->
-        {
-            files.forEach(this::sendFile);
 
         }).onFailure(error ->
         {
@@ -64,49 +140,244 @@ public class FileSender extends AbstractVerticle
         });
     }
 
-    private void sendFile(String filePath)
+    //Returns false if the queue is full, the file is then taken on a later scan
+    private boolean enqueue(String filePath)
+    {
+        if (queued.add(filePath) && !files.offer(filePath))
+        {
+            queued.remove(filePath);
+
+            return false;
+        }
+        return true;
+    }
+
+    private void sendFiles()
     {
-        vertx.<String>executeBlocking(promise ->
+        while (!Thread.currentThread().isInterrupted())
         {
+            String filePath;
+
+            try
+            {
+                filePath = files.take();
+            }
+            catch (InterruptedException exception)
+            {
+                return;
+            }
+
             try
             {
-                promise.complete(vertx.fileSystem().readFileBlocking(filePath).toString());
+                //A scan that listed the file before it was sent and deleted queues it again, there is nothing left to send
+                if (!Files.exists(Paths.get(filePath)))
+                {
+                    continue;
+                }
+
+                if (acknowledged)
+                {
+                    sendFileAcknowledged(filePath);
+                }
+                else
+                {
+                    sendFile(filePath);
+                }
             }
             catch (Exception exception)
             {
-                promise.fail(exception);
+                LOGGER.error("Error occurred while sending file {}: {}", filePath, exception.getMessage());
+            }
+            finally
+            {
+                queued.remove(filePath);
             }
-        }).compose(fileContent ->
+        }
+    }
+
+    //Reads the file chunk by chunk and sends every record as soon as it is decoded
+    private void sendFile(String filePath) throws Exception
+    {
+        // Extract file name
+        var fileName = Paths.get(filePath).getFileName().toString();
+
+        //Consumer keeps receiving the text file name whichever format the file was stored in
+        var bucket = fileName.substring(0, fileName.indexOf('.')) + ".txt";
+
+        var reader = RecordFormat.forFile(fileName).reader();
+
+        Consumer<JsonObject> send = record ->
         {
-            // Extract file name
-            var fileName = Paths.get(filePath).getFileName().toString();
+            var message = new JsonObject()
+                    .put("filename", bucket)
+                    .put("content", new JsonObject()
+                            .put("ip", record.getString("ip"))
+                            .put("result", record.getJsonObject("result"))
+                            .encode());
 
-            var fileParts = fileContent.split("---\n");
+            socket.send(message.encode(), 0);
+        };
+
+        try (InputStream input = Files.newInputStream(Paths.get(filePath)))
+        {
+            var chunk = new byte[Constants.SENDER_CHUNK_SIZE];
 
-            for (var part : fileParts)
+            for (var read = input.read(chunk); read >= 0; read = input.read(chunk))
             {
-                if (!part.trim().isEmpty())
+                reader.feed(Buffer.buffer().appendBytes(chunk, 0, read), send);
+            }
+
+            reader.end(send);
+        }
+
+        // Delete file after sending
+        Files.delete(Paths.get(filePath));
+    }
+
+    //At-least-once delivery, the file is deleted only after every record in it was acknowledged
+    private void sendFileAcknowledged(String filePath) throws Exception
+    {
+        var fileName = Paths.get(filePath).getFileName().toString();
+
+        var bucket = fileName.substring(0, fileName.indexOf('.')) + ".txt";
+
+        while (true)
+        {
+            //Resume from the last acknowledged record, anything after it is sent again
+            var offset = senderLog.offset(fileName);
+
+            unacknowledged.clear();
+
+            try
+            {
+                var reader = RecordFormat.forFile(fileName).reader();
+
+                Consumer<JsonObject> send = record ->
                 {
                     var message = new JsonObject()
-                            .put("filename", fileName)
-                            .put("content", part);
+                            .put("sequence", ++sequence)
+                            .put("offset", offset + reader.position())
+                            .put("filename", bucket)
+                            .put("content", new JsonObject()
+                                    .put("ip", record.getString("ip"))
+                                    .put("result", record.getJsonObject("result"))
+                                    .encode());
 
                     socket.send(message.encode(), 0);
+
+                    unacknowledged.add(new long[]{sequence, offset + reader.position()});
+
+                    while (unacknowledged.size() >= Constants.ACKNOWLEDGEMENT_WINDOW)
+                    {
+                        awaitAcknowledgement(fileName);
+                    }
+                };
+
+                try (InputStream input = Files.newInputStream(Paths.get(filePath)))
+                {
+                    input.skipNBytes(offset);
+
+                    var chunk = new byte[Constants.SENDER_CHUNK_SIZE];
+
+                    for (var read = input.read(chunk); read >= 0; read = input.read(chunk))
+                    {
+                        reader.feed(Buffer.buffer().appendBytes(chunk, 0, read), send);
+                    }
+
+                    reader.end(send);
+                }
+
+                while (!unacknowledged.isEmpty())
+                {
+                    awaitAcknowledgement(fileName);
+                }
+
+                break;
+            }
+            catch (AcknowledgementTimeoutException exception)
+            {
+                LOGGER.warn("{}, resending {} from offset {}", exception.getMessage(), fileName, senderLog.offset(fileName));
+
+                if (Thread.currentThread().isInterrupted())
+                {
+                    return;
                 }
             }
+        }
 
-            // Delete file after sending
-            return vertx.fileSystem().delete(filePath);
-        });
+        //Sealed file names are reused, so the offset is dropped before the file goes, a crash in between sends the file again from the start
+        senderLog.complete(fileName);
+
+        Files.delete(Paths.get(filePath));
+    }
+
+    //Acknowledgements are cumulative, a sequence number confirms every record sent before it
+    private void awaitAcknowledgement(String fileName)
+    {
+        var reply = socket.recvStr();
+
+        if (reply == null)
+        {
+            throw new AcknowledgementTimeoutException("No acknowledgement within " + Constants.ACKNOWLEDGEMENT_TIMEOUT + " ms");
+        }
+
+        try
+        {
+            var acknowledged = Long.parseLong(reply.trim());
+
+            var offset = -1L;
+
+            while (!unacknowledged.isEmpty() && unacknowledged.peek()[0] <= acknowledged)
+            {
+                offset = unacknowledged.poll()[1];
+            }
+
+            if (offset >= 0)
+            {
+                senderLog.acknowledge(fileName, offset);
+            }
+        }
+        catch (NumberFormatException exception)
+        {
+            LOGGER.warn("Ignoring invalid acknowledgement: {}", reply);
+        }
+        catch (Exception exception)
+        {
+            throw new IllegalStateException("Failed to write sender log", exception);
+        }
     }
 
     @Override
     public void stop()
     {
+        if (sender != null)
+        {
+            sender.interrupt();
+
+            try
+            {
+                sender.join(Constants.SENDER_STOP_TIMEOUT);
+            }
+            catch (InterruptedException exception)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
         if (socket != null)
         {
             socket.close();
         }
+        if (senderLog != null)
+        {
+            try
+            {
+                senderLog.close();
+            }
+            catch (Exception exception)
+            {
+                LOGGER.error("Failed to close sender log: {}", exception.getMessage());
+            }
+        }
         if (context != null)
         {
             context.close();
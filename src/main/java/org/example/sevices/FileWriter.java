@@ -1,82 +1,241 @@
 package org.example.sevices;
 
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
 import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.AsyncFile;
 import io.vertx.core.file.OpenOptions;
 import io.vertx.core.json.JsonObject;
 import org.example.Constants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.file.FileAlreadyExistsException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 public class FileWriter extends AbstractVerticle
 {
     private static final Logger LOGGER = LoggerFactory.getLogger(FileWriter.class);
 
+    //Files are written with this suffix and renamed once sealed, so FileSender never reads a file that is still growing
+    private static final String PART = ".part";
+
+    //Open handle of one timestamp file with the records that are not written yet
+    private static class BufferedFile
+    {
+        private Future<AsyncFile> file;
+
+        private final List<Buffer> pending = new ArrayList<>();
+
+        private int pendingBytes;
+
+        private long size; //Bytes already written to the file
+
+        private long lastWrite;
+
+        private String path;
+    }
+
+    private final Map<String, BufferedFile> files = new HashMap<>();
+
+    private final RecordFormat format = RecordFormat.current();
+
+    //Part files of this run are named <bucket>.<run>-<instance>-<n>.part, anything else found at startup is left over from a previous run
+    private static final String RUN = Long.toString(System.currentTimeMillis(), 36);
+
+    private final int instance;
+
+    private long opened; //Makes every part file unique, a bucket reopened while its previous file is being sealed gets a new one
+
+    public FileWriter(int instance)
+    {
+        this.instance = instance;
+    }
+
     @Override
     public void start()
     {
         vertx.eventBus().<JsonObject>localConsumer(Constants.FILE_WRITE, message ->
         {
-            vertx.executeBlocking(promise ->
+            try
             {
-                try
-                {
-                    var metricData = message.body().getJsonObject("metrics");
+                var metricData = message.body().getJsonObject("metrics");
+
+                var timestamp = message.body().getString("timestamp");
+
+                var context = metricData.getJsonObject("result");
 
-                    var timestamp = message.body().getString("timestamp");
+                var ip = metricData.getString("ip");
 
-                    var context = metricData.getJsonObject("result");
+                var filePath = Constants.BASE_DIRECTORY + "/" + String.format("%s.%s", timestamp, format.extension());
 
-                    var ip = metricData.getString("ip");
+                writeToFile(filePath,ip,Long.parseLong(timestamp),context);
+            }
+            catch (Exception exception)
+            {
+                LOGGER.error("Error during file operation: {}", exception.getMessage(), exception);
+            }
+        });
 
-                    var filePath = Constants.BASE_DIRECTORY + "/" + String.format("%s.txt", timestamp);
+        vertx.setPeriodic(Constants.FILE_FLUSH_INTERVAL, id -> flushAndCloseIdle());
 
-                    writeToFile(filePath,ip,context);
+        //Files left unsealed by a previous run are complete as far as this run is concerned
+        if (instance == 0)
+        {
+            vertx.fileSystem().readDir(Constants.BASE_DIRECTORY, ".*\\" + PART).onSuccess(paths -> paths.stream()
+                    .filter(path -> !path.contains("." + RUN + "-"))
+                    .forEach(this::seal));
+        }
+    }
 
-                    promise.complete();
-                }
-                catch (Exception exception)
+    //Records are only buffered here, they reach the disk on the next flush
+    private void writeToFile(String filePath, String ip, long timestamp, JsonObject metrics)
+    {
+        var bufferedFile = files.computeIfAbsent(filePath, this::open);
+
+        var record = format.encode(new JsonObject()
+                .put("ip", ip)
+                .put("timestamp", timestamp)
+                .put("result", metrics));
+
+        bufferedFile.pending.add(record);
+
+        bufferedFile.pendingBytes += record.length();
+
+        bufferedFile.lastWrite = System.currentTimeMillis();
+
+        if (bufferedFile.pendingBytes >= Constants.FILE_FLUSH_SIZE)
+        {
+            flush(bufferedFile);
+        }
+    }
+
+    private BufferedFile open(String filePath)
+    {
+        var bufferedFile = new BufferedFile();
+
+        bufferedFile.path = filePath + "." + RUN + "-" + instance + "-" + (++opened) + PART;
+
+        bufferedFile.file = vertx.fileSystem().open(bufferedFile.path, new OpenOptions().setAppend(true).setCreate(true))
+                .compose(file -> file.size().map(size ->
+                {
+                    bufferedFile.size = size;
+
+                    return file;
+                }))
+                .onFailure(error ->
                 {
-                    LOGGER.error("Error during file operation: {}", exception.getMessage(), exception);
+                    LOGGER.error("Error opening file {}: {}", filePath, error.getMessage());
 
-                    promise.fail(exception);
+                    files.remove(filePath, bufferedFile);
+                });
+
+        return bufferedFile;
+    }
+
+    //Coalesces every pending record of the file into a single write
+    private void flush(BufferedFile bufferedFile)
+    {
+        if (bufferedFile.pending.isEmpty())
+        {
+            return;
+        }
+
+        var records = new ArrayList<>(bufferedFile.pending);
+
+        bufferedFile.pending.clear();
+
+        bufferedFile.pendingBytes = 0;
+
+        bufferedFile.file.onSuccess(file ->
+        {
+            var buffer = Buffer.buffer();
+
+            for (var record : records)
+            {
+                if (bufferedFile.size + buffer.length() > 0)
+                {
+                    //Appending in file
+                    buffer.appendBuffer(format.separator());
                 }
-            });
+                buffer.appendBuffer(record);
+            }
+
+            bufferedFile.size += buffer.length();
+
+            file.write(buffer).onFailure(error -> LOGGER.error("Error writing to file: {}", error.getMessage()));
         });
     }
 
-    private void writeToFile(String filePath, String ip, JsonObject metrics)
+    private void flushAndCloseIdle()
     {
-        try
+        var currentTime = System.currentTimeMillis();
+
+        var iterator = files.values().iterator();
+
+        while (iterator.hasNext())
         {
-            vertx.fileSystem().open(filePath,new OpenOptions().setAppend(true).setCreate(true))
-                    .onSuccess(file->
-                    {
-                        if(file.sizeBlocking() == 0)
-                        {
-                            //New file will be created
-                            file.write(Buffer.buffer(new JsonObject()
-                                            .put("ip",ip)
-                                            .put("result",metrics)
-                                            .encodePrettily()))
-                                    .onComplete(writeResult -> file.close());
-                        }
-                        else
-                        {
-                            //Appending in file
-                            file.write(Buffer.buffer("---\n" + new JsonObject()
-                                            .put("ip", ip)
-                                            .put("result", metrics)
-                                            .encodePrettily()))
-                                    .onComplete(writeResult -> file.close());
-                        }
-                    });
+            var bufferedFile = iterator.next();
+
+            flush(bufferedFile);
+
+            if (currentTime - bufferedFile.lastWrite >= Constants.FILE_IDLE_TIMEOUT)
+            {
+                iterator.remove();
+
+                var filePath = bufferedFile.path;
+
+                //Close waits for the writes that are still queued on the file
+                bufferedFile.file.compose(AsyncFile::close).onSuccess(v -> seal(filePath));
+            }
         }
-        catch (Exception exception)
+    }
+
+    //Renames a closed file to its final name and tells FileSender it can be shipped
+    private Future<Void> seal(String partPath)
+    {
+        var unsealed = partPath.substring(0, partPath.length() - PART.length());
+
+        var finalPath = unsealed.substring(0, unsealed.lastIndexOf('.'));
+
+        return sealAs(partPath, finalPath, 0)
+                .onSuccess(sealedPath -> vertx.eventBus().send(Constants.FILE_SEALED, sealedPath))
+                .onFailure(error -> LOGGER.error("Error sealing file {}: {}", partPath, error.getMessage()))
+                .mapEmpty();
+    }
+
+    //A bucket that got more results after it was sealed is sealed again as <timestamp>.<n>.<extension>
+    private Future<String> sealAs(String partPath, String finalPath, int attempt)
+    {
+        var target = attempt == 0 ? finalPath : finalPath.replaceFirst("\\.([^./]+)$", "." + attempt + ".$1");
+
+        //Another instance may take the same name between the check and the move, the move then fails instead of replacing its file
+        return vertx.fileSystem().exists(target).compose(exists -> exists
+                ? sealAs(partPath, finalPath, attempt + 1)
+                : vertx.fileSystem().move(partPath, target).map(target)
+                        .recover(error -> error.getCause() instanceof FileAlreadyExistsException
+                                ? sealAs(partPath, finalPath, attempt + 1)
+                                : Future.failedFuture(error)));
+    }
+
+    @Override
+    public void stop(Promise<Void> stopPromise)
+    {
+        var closed = new ArrayList<Future<Void>>();
+
+        files.values().forEach(bufferedFile ->
         {
-            LOGGER.error("Error during file operation: {}", exception.getMessage(), exception);
+            flush(bufferedFile);
 
-            throw exception;
-        }
+            closed.add(bufferedFile.file.compose(AsyncFile::close).compose(v -> seal(bufferedFile.path)));
+        });
+
+        files.clear();
+
+        Future.join(closed).<Void>mapEmpty().onComplete(stopPromise);
     }
 }
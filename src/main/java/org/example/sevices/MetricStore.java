@@ -0,0 +1,378 @@
+package org.example.sevices;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.example.Constants;
+import org.example.tsdb.Chunk;
+import org.example.tsdb.Rollup;
+import org.example.tsdb.Segment;
+import org.example.tsdb.SeriesStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.Callable;
+
+import static org.example.Main.objects;
+
+//Keeps the polled results as compressed series per object, metric group and numeric field, and answers range queries on them
+public class MetricStore extends AbstractVerticle
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetricStore.class);
+
+    private SeriesStore store;
+
+    //Finest first
+    private List<Rollup> rollups;
+
+    @Override
+    public void start(Promise<Void> startPromise)
+    {
+        vertx.executeBlocking(() ->
+        {
+            var directory = Path.of(Constants.TSDB_DIRECTORY);
+
+            rollups = List.of(
+                    new Rollup(directory, 300, 86400, Constants.TSDB_RETENTION_5M),
+                    new Rollup(directory, 3600, 7 * 86400, Constants.TSDB_RETENTION_1H),
+                    new Rollup(directory, 86400, 90 * 86400, Constants.TSDB_RETENTION_1D));
+
+            return new SeriesStore(directory, Constants.TSDB_PARTITION);
+
+        }).onSuccess(seriesStore ->
+        {
+            store = seriesStore;
+
+            //Poller publishes every result it gets
+            vertx.eventBus().<JsonObject>localConsumer(Constants.POLL_RESULT, message ->
+            {
+                try
+                {
+                    ingest(message.body());
+                }
+                catch (Exception exception)
+                {
+                    LOGGER.error("Error storing metrics: {}", exception.getMessage());
+                }
+            });
+
+            vertx.eventBus().<JsonObject>localConsumer(Constants.METRIC_QUERY, message ->
+            {
+                var request = message.body();
+
+                var objectId = request.getLong("object.id");
+
+                var group = request.getString("metric.group.name");
+
+                var from = request.getLong("from");
+
+                var to = request.getLong("to");
+
+                var prefix = objectId + "|" + (group == null ? "" : group + "|");
+
+                if (request.getLong("step", 1L) <= 0)
+                {
+                    message.fail(400, "step must be a positive number of seconds");
+
+                    return;
+                }
+
+                //At most Constants.TSDB_MAX_POINTS steps fit in the range, a finer step asked for is raised to that
+                var step = Math.max(request.getLong("step", 1L), Math.ceilDiv(to - from + 1, Constants.TSDB_MAX_POINTS));
+
+                Rollup rollup;
+
+                if (request.containsKey("step"))
+                {
+                    //Coarsest resolution that still has a point per step, raw points if the step is finer than every rollup
+                    rollup = rollups.stream().filter(candidate -> candidate.resolution() <= step).reduce((finer, coarser) -> coarser).orElse(null);
+                }
+                else
+                {
+                    //Finest resolution no finer than the step, raw points below the first rollup
+                    rollup = step < rollups.getFirst().resolution() ? null : rollups.stream()
+                            .filter(candidate -> candidate.resolution() >= step)
+                            .findFirst()
+                            .orElse(rollups.getLast());
+                }
+
+                Callable<Map<String, JsonArray>> query = rollup == null ? store.query(prefix, from, to)::run : rollup.query(prefix, from, to)::run;
+
+                vertx.executeBlocking(query, false).onSuccess(series ->
+                {
+                    var response = new JsonArray();
+
+                    series.forEach((key, points) ->
+                    {
+                        var parts = key.split("\\|", 3);
+
+                        //Raw points of frequent polls, or rows of a resolution finer than the step, can be more than one per step
+                        if (points.size() > Math.ceilDiv(to - from + 1, step))
+                        {
+                            points = downsample(points, from, step, rollup != null);
+                        }
+
+                        response.add(new JsonObject()
+                                .put("metric.group.name", parts[1])
+                                .put("metric", parts[2])
+                                .put("points", points));
+                    });
+
+                    message.reply(new JsonObject()
+                            .put("object.id", objectId)
+                            .put("from", from)
+                            .put("to", to)
+                            .put("resolution", rollup == null ? "raw" : rollup.resolution() + "s")
+                            .put("step", step)
+                            .put("series", response));
+
+                }).onFailure(error -> message.fail(500, error.getMessage()));
+            });
+
+            vertx.setPeriodic(Constants.TSDB_MAINTENANCE_INTERVAL, id -> maintain());
+
+            startPromise.complete();
+
+        }).onFailure(error ->
+        {
+            LOGGER.error("Failed to open metric store: {}", error.getMessage(), error);
+
+            startPromise.fail(error);
+        });
+    }
+
+    private void ingest(JsonObject data)
+    {
+        var metrics = data.getJsonObject("metrics");
+
+        var ids = objects.find("ip", metrics.getString("ip"));
+
+        if (ids.isEmpty())
+        {
+            return;
+        }
+
+        var objectId = ids.iterator().next();
+
+        var timestamp = Long.parseLong(data.getString("timestamp"));
+
+        var result = metrics.getJsonObject("result");
+
+        if (result == null)
+        {
+            return;
+        }
+
+        //Results of a coalesced poll are keyed by group name
+        if (data.containsKey("metric.groups"))
+        {
+            for (var group : data.getJsonArray("metric.groups"))
+            {
+                var groupResult = result.getValue((String) group);
+
+                if (groupResult instanceof JsonObject object)
+                {
+                    store(objectId + "|" + group + "|", "", object, timestamp);
+                }
+            }
+        }
+        else
+        {
+            store(objectId + "|" + data.getString("metric.group.name") + "|", "", result, timestamp);
+        }
+    }
+
+    //Every numeric field becomes a series, nested objects are flattened with dotted names and anything else is skipped
+    private void store(String prefix, String path, JsonObject result, long timestamp)
+    {
+        result.forEach(entry ->
+        {
+            var name = path + entry.getKey();
+
+            switch (entry.getValue())
+            {
+                case Number number -> append(prefix + name, timestamp, number.doubleValue());
+
+                case JsonObject object -> store(prefix, name + ".", object, timestamp);
+
+                case String text ->
+                {
+                    try
+                    {
+                        append(prefix + name, timestamp, Double.parseDouble(text.trim()));
+                    }
+                    catch (NumberFormatException ignored)
+                    {
+                        //Not a number
+                    }
+                }
+
+                case null, default ->
+                {
+
+                }
+            }
+        });
+    }
+
+    //Merges the points of every step into one, [timestamp, value] pairs into their average and rollup rows
+    //[start, min, max, avg, count] into the row they would have at the coarser resolution, timestamps are step starts
+    private static JsonArray downsample(JsonArray points, long from, long step, boolean rollup)
+    {
+        var merged = new JsonArray();
+
+        JsonArray current = null;
+
+        var sum = 0.0;
+
+        var total = 0L;
+
+        for (var i = 0; i < points.size(); i++)
+        {
+            var point = points.getJsonArray(i);
+
+            var start = from + Math.floorDiv(point.getLong(0) - from, step) * step;
+
+            var count = rollup ? point.getLong(4) : 1;
+
+            var average = rollup ? point.getDouble(3) : point.getDouble(1);
+
+            if (current == null || current.getLong(0) != start)
+            {
+                current = rollup
+                        ? new JsonArray().add(start).add(point.getDouble(1)).add(point.getDouble(2)).add(0.0).add(0L)
+                        : new JsonArray().add(start).add(0.0);
+
+                merged.add(current);
+
+                sum = 0;
+
+                total = 0;
+            }
+
+            sum += average * count;
+
+            total += count;
+
+            if (rollup)
+            {
+                current.set(1, Math.min(current.getDouble(1), point.getDouble(1)))
+                        .set(2, Math.max(current.getDouble(2), point.getDouble(2)))
+                        .set(3, total == 0 ? 0 : sum / total)
+                        .set(4, total);
+            }
+            else
+            {
+                current.set(1, sum / total);
+            }
+        }
+
+        return merged;
+    }
+
+    //Rollups are only fed points the raw series accepted, so a repeated result is not counted twice
+    private void append(String key, long timestamp, double value)
+    {
+        if (store.append(key, timestamp, value))
+        {
+            rollups.forEach(rollup -> rollup.add(key, timestamp, value));
+        }
+    }
+
+    //Seals partitions that are complete and drops the ones past retention
+    private void maintain()
+    {
+        var now = System.currentTimeMillis() / 1000;
+
+        logLate(store, "raw");
+
+        seal(store, store.beginSeal(now, Constants.TSDB_SEAL_DELAY));
+
+        expire(store, now, Constants.TSDB_RETENTION);
+
+        for (var rollup : rollups)
+        {
+            logLate(rollup.store(), rollup.resolution() + "s rollup");
+
+            rollup.flushIdle(now, Constants.TSDB_SEAL_DELAY);
+
+            //A bucket is written up to one bucket plus the seal delay after it started
+            seal(rollup.store(), rollup.store().beginSeal(now, rollup.resolution() + Constants.TSDB_SEAL_DELAY));
+
+            expire(rollup.store(), now, rollup.retention());
+        }
+    }
+
+    //Results older than the seal delay arrive while their partition is written out and cannot be stored
+    private void logLate(SeriesStore seriesStore, String name)
+    {
+        var late = seriesStore.takeLate();
+
+        if (late > 0)
+        {
+            LOGGER.warn("Dropped {} {} points that arrived while their partition was being sealed, consider a larger tsdb.seal.delay", late, name);
+        }
+    }
+
+    private List<Future<Segment>> seal(SeriesStore seriesStore, Map<Long, SortedMap<String, Chunk>> partitions)
+    {
+        var sealed = new ArrayList<Future<Segment>>();
+
+        partitions.forEach((partition, chunks) ->
+                sealed.add(vertx.executeBlocking(() -> seriesStore.writeSegment(partition, chunks), false)
+                        .onSuccess(segment -> seriesStore.endSeal(partition, segment))
+                        .onFailure(error ->
+                        {
+                            LOGGER.error("Failed to seal partition {}: {}", partition, error.getMessage());
+
+                            seriesStore.endSeal(partition, null);
+                        })));
+
+        return sealed;
+    }
+
+    private void expire(SeriesStore seriesStore, long now, long retention)
+    {
+        var expired = seriesStore.expire(now, retention);
+
+        if (!expired.isEmpty())
+        {
+            vertx.executeBlocking(() ->
+            {
+                SeriesStore.delete(expired);
+
+                return null;
+            }, false).onFailure(error -> LOGGER.error("Failed to delete expired segments: {}", error.getMessage()));
+        }
+    }
+
+    //Partitions still in memory and open rollup buckets are written out, they would be lost otherwise
+    @Override
+    public void stop(Promise<Void> stopPromise)
+    {
+        if (store == null)
+        {
+            stopPromise.complete();
+
+            return;
+        }
+
+        var sealed = new ArrayList<>(seal(store, store.beginSealAll()));
+
+        for (var rollup : rollups)
+        {
+            rollup.flushAll();
+
+            sealed.addAll(seal(rollup.store(), rollup.store().beginSealAll()));
+        }
+
+        Future.join(sealed).<Void>mapEmpty().onComplete(stopPromise);
+    }
+}
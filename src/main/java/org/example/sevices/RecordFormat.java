@@ -0,0 +1,29 @@
+package org.example.sevices;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import org.example.Constants;
+
+//On-disk encoding of polled records, a record is a JsonObject with ip, timestamp and result
+public interface RecordFormat
+{
+    String extension();
+
+    Buffer encode(JsonObject record);
+
+    //Written between two records of the same file
+    Buffer separator();
+
+    RecordReader reader();
+
+    static RecordFormat current()
+    {
+        return "text".equals(Constants.FILE_FORMAT) ? TextRecordFormat.INSTANCE : BinaryRecordFormat.INSTANCE;
+    }
+
+    //Files keep the format they were written in, even if the configured format changed since
+    static RecordFormat forFile(String fileName)
+    {
+        return fileName.endsWith("." + BinaryRecordFormat.INSTANCE.extension()) ? BinaryRecordFormat.INSTANCE : TextRecordFormat.INSTANCE;
+    }
+}
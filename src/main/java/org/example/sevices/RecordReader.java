@@ -0,0 +1,17 @@
+package org.example.sevices;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+
+import java.util.function.Consumer;
+
+//Incremental decoder, chunks can be fed as they are read and records are emitted as soon as they are complete
+public interface RecordReader
+{
+    void feed(Buffer chunk, Consumer<JsonObject> handler);
+
+    void end(Consumer<JsonObject> handler);
+
+    //Bytes fed so far up to the end of the last emitted record, a new reader can resume from there
+    long position();
+}
@@ -0,0 +1,131 @@
+package org.example.sevices;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+//Append-only log of acknowledged offsets per storage file, lines are "<file> <offset>" or "<file> done"
+public class SenderLog
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(SenderLog.class);
+
+    private static final String DONE = "done";
+
+    private final Path path;
+
+    private final Map<String, Long> offsets = new HashMap<>();
+
+    private int entries;
+
+    private FileChannel channel;
+
+    public SenderLog(String path) throws IOException
+    {
+        this.path = Path.of(path);
+
+        if (Files.exists(this.path))
+        {
+            for (var line : Files.readAllLines(this.path, StandardCharsets.UTF_8))
+            {
+                var separator = line.lastIndexOf(' ');
+
+                if (separator <= 0)
+                {
+                    continue; //Torn last line of a crash
+                }
+
+                var fileName = line.substring(0, separator);
+
+                var value = line.substring(separator + 1);
+
+                try
+                {
+                    if (DONE.equals(value))
+                    {
+                        offsets.remove(fileName);
+                    }
+                    else
+                    {
+                        offsets.put(fileName, Long.parseLong(value));
+                    }
+                }
+                catch (NumberFormatException exception)
+                {
+                    LOGGER.warn("Skipping corrupt sender log line: {}", line);
+                }
+            }
+        }
+
+        compact();
+    }
+
+    public long offset(String fileName)
+    {
+        return offsets.getOrDefault(fileName, 0L);
+    }
+
+    public void acknowledge(String fileName, long offset) throws IOException
+    {
+        offsets.put(fileName, offset);
+
+        append(fileName + " " + offset + "\n");
+    }
+
+    public void complete(String fileName) throws IOException
+    {
+        offsets.remove(fileName);
+
+        append(fileName + " " + DONE + "\n");
+    }
+
+    private void append(String line) throws IOException
+    {
+        channel.write(ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8)));
+
+        if (++entries > offsets.size() + 10000)
+        {
+            compact();
+        }
+    }
+
+    //Rewrites the log with only the files that are still in progress
+    private void compact() throws IOException
+    {
+        if (channel != null)
+        {
+            channel.close();
+        }
+
+        var content = new StringBuilder();
+
+        offsets.forEach((fileName, offset) -> content.append(fileName).append(' ').append(offset).append('\n'));
+
+        var temporary = Path.of(path + ".tmp");
+
+        Files.writeString(temporary, content, StandardCharsets.UTF_8);
+
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        entries = offsets.size();
+
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    public void close() throws IOException
+    {
+        if (channel != null)
+        {
+            channel.close();
+        }
+    }
+}
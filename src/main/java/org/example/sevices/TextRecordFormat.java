@@ -0,0 +1,134 @@
+package org.example.sevices;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+//Pretty printed JSON documents separated by "---\n"
+public class TextRecordFormat implements RecordFormat
+{
+    public static final TextRecordFormat INSTANCE = new TextRecordFormat();
+
+    private static final byte[] DELIMITER = "---\n".getBytes(StandardCharsets.UTF_8);
+
+    private TextRecordFormat()
+    {
+
+    }
+
+    @Override
+    public String extension()
+    {
+        return "txt";
+    }
+
+    @Override
+    public Buffer encode(JsonObject record)
+    {
+        return Buffer.buffer(new JsonObject()
+                .put("ip", record.getString("ip"))
+                .put("result", record.getJsonObject("result"))
+                .encodePrettily());
+    }
+
+    @Override
+    public Buffer separator()
+    {
+        return Buffer.buffer(DELIMITER);
+    }
+
+    @Override
+    public RecordReader reader()
+    {
+        return new RecordReader()
+        {
+            private Buffer pending = Buffer.buffer();
+
+            private int searchFrom; //Bytes before this offset are known not to start a delimiter
+
+            private long consumed; //Bytes already dropped from pending
+
+            private long position;
+
+            @Override
+            public void feed(Buffer chunk, Consumer<JsonObject> handler)
+            {
+                pending.appendBuffer(chunk);
+
+                var start = 0;
+
+                for (var index = indexOfDelimiter(pending, searchFrom); index >= 0; index = indexOfDelimiter(pending, start))
+                {
+                    position = consumed + index;
+
+                    emit(pending.getString(start, index, "UTF-8"), handler);
+
+                    start = index + DELIMITER.length;
+                }
+
+                if (start > 0)
+                {
+                    pending = pending.getBuffer(start, pending.length());
+
+                    consumed += start;
+                }
+
+                searchFrom = Math.max(0, pending.length() - DELIMITER.length + 1);
+            }
+
+            @Override
+            public void end(Consumer<JsonObject> handler)
+            {
+                position = consumed + pending.length();
+
+                consumed = position;
+
+                emit(pending.toString(StandardCharsets.UTF_8), handler);
+
+                pending = Buffer.buffer();
+
+                searchFrom = 0;
+            }
+
+            @Override
+            public long position()
+            {
+                return position;
+            }
+        };
+    }
+
+    private static void emit(String part, Consumer<JsonObject> handler)
+    {
+        if (!part.trim().isEmpty())
+        {
+            handler.accept(new JsonObject(part));
+        }
+    }
+
+    private static int indexOfDelimiter(Buffer buffer, int from)
+    {
+        for (int i = from; i <= buffer.length() - DELIMITER.length; i++)
+        {
+            var match = true;
+
+            for (int j = 0; j < DELIMITER.length; j++)
+            {
+                if (buffer.getByte(i + j) != DELIMITER[j])
+                {
+                    match = false;
+
+                    break;
+                }
+            }
+
+            if (match)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,42 @@
+package org.example.tsdb;
+
+import java.nio.ByteBuffer;
+
+//Reads what BitWriter wrote, straight from a heap or memory-mapped buffer
+public class BitReader
+{
+    private final ByteBuffer buffer;
+
+    private final int offset;
+
+    private long bits;
+
+    public BitReader(ByteBuffer buffer, int offset)
+    {
+        this.buffer = buffer;
+
+        this.offset = offset;
+    }
+
+    public boolean readBit()
+    {
+        var current = buffer.get(offset + (int) (bits >>> 3));
+
+        var bit = (current & (0x80 >>> (bits & 7))) != 0;
+
+        bits++;
+
+        return bit;
+    }
+
+    public long readBits(int count)
+    {
+        long value = 0;
+
+        for (int i = 0; i < count; i++)
+        {
+            value = (value << 1) | (readBit() ? 1 : 0);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,44 @@
+package org.example.tsdb;
+
+import java.util.Arrays;
+
+//Appends bit fields most significant bit first into a growing byte array
+public class BitWriter
+{
+    private byte[] bytes = new byte[32];
+
+    private long bits;
+
+    public void writeBit(boolean bit)
+    {
+        if (bits >>> 3 >= bytes.length)
+        {
+            bytes = Arrays.copyOf(bytes, bytes.length * 2);
+        }
+
+        if (bit)
+        {
+            bytes[(int) (bits >>> 3)] |= (byte) (0x80 >>> (bits & 7));
+        }
+        bits++;
+    }
+
+    //Low count bits of value
+    public void writeBits(long value, int count)
+    {
+        for (int i = count - 1; i >= 0; i--)
+        {
+            writeBit(((value >>> i) & 1) != 0);
+        }
+    }
+
+    public int length()
+    {
+        return (int) ((bits + 7) >>> 3);
+    }
+
+    public byte[] toByteArray()
+    {
+        return Arrays.copyOf(bytes, length());
+    }
+}
@@ -0,0 +1,235 @@
+package org.example.tsdb;
+
+import java.nio.ByteBuffer;
+
+//Points of one series within one partition, compressed as in Gorilla: delta-of-delta timestamps and XOR'd values
+//Timestamps are epoch seconds and have to increase, a regular poll interval costs one bit per timestamp
+public class Chunk
+{
+    public interface PointConsumer
+    {
+        void accept(long timestamp, double value);
+    }
+
+    private final BitWriter writer = new BitWriter();
+
+    private int count;
+
+    private long firstTimestamp;
+
+    private long lastTimestamp;
+
+    private long lastDelta;
+
+    private long lastValue;
+
+    private int lastLeading = -1;
+
+    private int lastTrailing;
+
+    //Returns false for a point that is not newer than the last one
+    public boolean append(long timestamp, double value)
+    {
+        var bits = Double.doubleToRawLongBits(value);
+
+        if (count == 0)
+        {
+            writer.writeBits(timestamp, 64);
+
+            writer.writeBits(bits, 64);
+
+            firstTimestamp = timestamp;
+        }
+        else
+        {
+            if (timestamp <= lastTimestamp)
+            {
+                return false;
+            }
+
+            var delta = timestamp - lastTimestamp;
+
+            writeTimestamp(delta - lastDelta);
+
+            writeValue(bits ^ lastValue);
+
+            lastDelta = delta;
+        }
+
+        lastTimestamp = timestamp;
+
+        lastValue = bits;
+
+        count++;
+
+        return true;
+    }
+
+    private void writeTimestamp(long deltaOfDelta)
+    {
+        if (deltaOfDelta == 0)
+        {
+            writer.writeBit(false);
+        }
+        else if (deltaOfDelta >= -63 && deltaOfDelta <= 64)
+        {
+            writer.writeBits(0b10, 2);
+
+            writer.writeBits(deltaOfDelta + 63, 7);
+        }
+        else if (deltaOfDelta >= -255 && deltaOfDelta <= 256)
+        {
+            writer.writeBits(0b110, 3);
+
+            writer.writeBits(deltaOfDelta + 255, 9);
+        }
+        else if (deltaOfDelta >= -2047 && deltaOfDelta <= 2048)
+        {
+            writer.writeBits(0b1110, 4);
+
+            writer.writeBits(deltaOfDelta + 2047, 12);
+        }
+        else
+        {
+            writer.writeBits(0b1111, 4);
+
+            writer.writeBits(deltaOfDelta, 64);
+        }
+    }
+
+    private void writeValue(long xor)
+    {
+        if (xor == 0)
+        {
+            writer.writeBit(false);
+
+            return;
+        }
+
+        writer.writeBit(true);
+
+        var leading = Math.min(31, Long.numberOfLeadingZeros(xor));
+
+        var trailing = Long.numberOfTrailingZeros(xor);
+
+        //Meaningful bits fit in the window of the previous value, only they are written
+        if (lastLeading >= 0 && leading >= lastLeading && trailing >= lastTrailing)
+        {
+            writer.writeBit(false);
+
+            writer.writeBits(xor >>> lastTrailing, 64 - lastLeading - lastTrailing);
+
+            return;
+        }
+
+        var significant = 64 - leading - trailing;
+
+        writer.writeBit(true);
+
+        writer.writeBits(leading, 5);
+
+        writer.writeBits(significant - 1, 6);
+
+        writer.writeBits(xor >>> trailing, significant);
+
+        lastLeading = leading;
+
+        lastTrailing = trailing;
+    }
+
+    public int count()
+    {
+        return count;
+    }
+
+    public long firstTimestamp()
+    {
+        return firstTimestamp;
+    }
+
+    public long lastTimestamp()
+    {
+        return lastTimestamp;
+    }
+
+    public byte[] bytes()
+    {
+        return writer.toByteArray();
+    }
+
+    //Hands over the points between from and to, both inclusive
+    public static void decode(ByteBuffer buffer, int offset, int count, long from, long to, PointConsumer consumer)
+    {
+        var reader = new BitReader(buffer, offset);
+
+        long timestamp = 0;
+
+        long delta = 0;
+
+        long value = 0;
+
+        var leading = 0;
+
+        var trailing = 0;
+
+        for (int i = 0; i < count; i++)
+        {
+            if (i == 0)
+            {
+                timestamp = reader.readBits(64);
+
+                value = reader.readBits(64);
+            }
+            else
+            {
+                delta += readDeltaOfDelta(reader);
+
+                timestamp += delta;
+
+                if (reader.readBit())
+                {
+                    if (reader.readBit())
+                    {
+                        leading = (int) reader.readBits(5);
+
+                        var significant = (int) reader.readBits(6) + 1;
+
+                        trailing = 64 - leading - significant;
+                    }
+                    value ^= reader.readBits(64 - leading - trailing) << trailing;
+                }
+            }
+
+            if (timestamp > to)
+            {
+                return;
+            }
+
+            if (timestamp >= from)
+            {
+                consumer.accept(timestamp, Double.longBitsToDouble(value));
+            }
+        }
+    }
+
+    private static long readDeltaOfDelta(BitReader reader)
+    {
+        if (!reader.readBit())
+        {
+            return 0;
+        }
+        if (!reader.readBit())
+        {
+            return reader.readBits(7) - 63;
+        }
+        if (!reader.readBit())
+        {
+            return reader.readBits(9) - 255;
+        }
+        if (!reader.readBit())
+        {
+            return reader.readBits(12) - 2047;
+        }
+        return reader.readBits(64);
+    }
+}
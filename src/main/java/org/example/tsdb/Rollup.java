@@ -0,0 +1,267 @@
+package org.example.tsdb;
+
+import io.vertx.core.json.JsonArray;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+//Min, max, sum and count of every series over fixed buckets, kept in a store of their own with coarser partitions and longer retention
+//A bucket is written once a point of a later bucket arrives or it has been idle for too long, until then queries read it from memory
+//A bucket written at shutdown is picked up again as a second row with the same start, queries merge the rows of a start
+public class Rollup
+{
+    private static final String[] STATISTICS = {"min", "max", "sum", "count"};
+
+    private static class Bucket
+    {
+        private final long start;
+
+        private double min = Double.POSITIVE_INFINITY;
+
+        private double max = Double.NEGATIVE_INFINITY;
+
+        private double sum;
+
+        private long count;
+
+        private Bucket(long start)
+        {
+            this.start = start;
+        }
+
+        private void add(double value)
+        {
+            min = Math.min(min, value);
+
+            max = Math.max(max, value);
+
+            sum += value;
+
+            count++;
+        }
+
+        private double[] values()
+        {
+            return new double[]{min, max, sum, count};
+        }
+    }
+
+    private final long resolution;
+
+    private final long retention;
+
+    private final SeriesStore store;
+
+    private final Map<String, Bucket> open = new HashMap<>();
+
+    //Blocking, opens the store under directory/<resolution>s
+    public Rollup(Path directory, long resolution, long partitionSize, long retention) throws IOException
+    {
+        this.resolution = resolution;
+
+        this.retention = retention;
+
+        this.store = new SeriesStore(directory.resolve(resolution + "s"), partitionSize);
+    }
+
+    public long resolution()
+    {
+        return resolution;
+    }
+
+    public long retention()
+    {
+        return retention;
+    }
+
+    public SeriesStore store()
+    {
+        return store;
+    }
+
+    public void add(String key, long timestamp, double value)
+    {
+        var start = timestamp - Math.floorMod(timestamp, resolution);
+
+        var bucket = open.get(key);
+
+        if (bucket != null && bucket.start != start)
+        {
+            //Late point of a bucket that is already written
+            if (start < bucket.start)
+            {
+                return;
+            }
+
+            write(key, bucket);
+
+            bucket = null;
+        }
+
+        if (bucket == null)
+        {
+            bucket = new Bucket(start);
+
+            open.put(key, bucket);
+        }
+
+        bucket.add(value);
+    }
+
+    //Writes the buckets that ended at least delay seconds ago, series that stopped reporting would keep theirs open otherwise
+    public void flushIdle(long now, long delay)
+    {
+        var iterator = open.entrySet().iterator();
+
+        while (iterator.hasNext())
+        {
+            var entry = iterator.next();
+
+            if (entry.getValue().start + resolution + delay <= now)
+            {
+                write(entry.getKey(), entry.getValue());
+
+                iterator.remove();
+            }
+        }
+    }
+
+    //Every open bucket, used at shutdown before the store is sealed
+    public void flushAll()
+    {
+        open.forEach(this::write);
+
+        open.clear();
+    }
+
+    private void write(String key, Bucket bucket)
+    {
+        var values = bucket.values();
+
+        for (int i = 0; i < STATISTICS.length; i++)
+        {
+            store.append(key + "|" + STATISTICS[i], bucket.start, values[i]);
+        }
+    }
+
+    //Taken on the event loop, run as blocking code, same as SeriesStore.query
+    public Query query(String prefix, long from, long to)
+    {
+        var buckets = new TreeMap<String, double[]>();
+
+        var starts = new HashMap<String, Long>();
+
+        open.forEach((key, bucket) ->
+        {
+            if (key.startsWith(prefix) && bucket.start >= from && bucket.start <= to)
+            {
+                buckets.put(key, bucket.values());
+
+                starts.put(key, bucket.start);
+            }
+        });
+
+        return new Query(store.query(prefix, from, to), buckets, starts);
+    }
+
+    public static class Query
+    {
+        private final SeriesStore.Query stored;
+
+        private final Map<String, double[]> buckets;
+
+        private final Map<String, Long> starts;
+
+        private Query(SeriesStore.Query stored, Map<String, double[]> buckets, Map<String, Long> starts)
+        {
+            this.stored = stored;
+
+            this.buckets = buckets;
+
+            this.starts = starts;
+        }
+
+        //Points of every series as [bucket start, min, max, avg, count] in time order
+        public Map<String, JsonArray> run()
+        {
+            var points = new TreeMap<String, TreeMap<Long, double[]>>();
+
+            stored.run().forEach((key, statistic) ->
+            {
+                var separator = key.lastIndexOf('|');
+
+                var index = indexOf(key.substring(separator + 1));
+
+                var series = points.computeIfAbsent(key.substring(0, separator), name -> new TreeMap<>());
+
+                for (int i = 0; i < statistic.size(); i++)
+                {
+                    var point = statistic.getJsonArray(i);
+
+                    merge(series.computeIfAbsent(point.getLong(0), start -> empty()), index, point.getDouble(1));
+                }
+            });
+
+            buckets.forEach((key, values) ->
+            {
+                var merged = points.computeIfAbsent(key, name -> new TreeMap<>()).computeIfAbsent(starts.get(key), start -> empty());
+
+                for (int i = 0; i < STATISTICS.length; i++)
+                {
+                    merge(merged, i, values[i]);
+                }
+            });
+
+            var series = new TreeMap<String, JsonArray>();
+
+            points.forEach((key, values) ->
+            {
+                var array = new JsonArray();
+
+                values.forEach((start, value) -> array.add(new JsonArray()
+                        .add(start)
+                        .add(value[0])
+                        .add(value[1])
+                        .add(value[3] == 0 ? 0 : value[2] / value[3])
+                        .add((long) value[3])));
+
+                series.put(key, array);
+            });
+
+            return series;
+        }
+
+        private static double[] empty()
+        {
+            return new double[]{Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, 0, 0};
+        }
+
+        //Rows of the same start are parts of one bucket, written before and after a restart
+        private static void merge(double[] values, int index, double value)
+        {
+            values[index] = switch (index)
+            {
+                case 0 -> Math.min(values[index], value);
+
+                case 1 -> Math.max(values[index], value);
+
+                default -> values[index] + value;
+            };
+        }
+
+        private static int indexOf(String statistic)
+        {
+            for (int i = 0; i < STATISTICS.length; i++)
+            {
+                if (STATISTICS[i].equals(statistic))
+                {
+                    return i;
+                }
+            }
+            throw new IllegalStateException("Unknown rollup statistic " + statistic);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package org.example.tsdb;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+//Immutable file holding the chunks of every series of one partition, read through a memory mapping
+//Layout: magic, partition start, series count, then per series key, point count, first and last timestamp, chunk length and chunk bytes
+public class Segment
+{
+    private static final int MAGIC = 0x4E4D5453; //NMTS
+
+    public static final String EXTENSION = ".seg";
+
+    private record Entry(int count, long firstTimestamp, long lastTimestamp, int offset)
+    {
+
+    }
+
+    private final Path path;
+
+    private final long partition;
+
+    private final ByteBuffer buffer;
+
+    private final TreeMap<String, Entry> entries = new TreeMap<>();
+
+    private Segment(Path path, long partition, ByteBuffer buffer)
+    {
+        this.path = path;
+
+        this.partition = partition;
+
+        this.buffer = buffer;
+    }
+
+    //Written under a temporary name, forced to disk and renamed, then the directory is synced so the rename is durable too
+    //A crash or power loss leaves either the whole segment or none of it
+    public static Segment write(Path path, long partition, SortedMap<String, Chunk> chunks) throws IOException
+    {
+        var temporary = Path.of(path + ".tmp");
+
+        try (var channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+        {
+            var output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+
+            output.writeInt(MAGIC);
+
+            output.writeLong(partition);
+
+            output.writeInt(chunks.size());
+
+            for (Map.Entry<String, Chunk> entry : chunks.entrySet())
+            {
+                var key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+
+                var chunk = entry.getValue();
+
+                var bytes = chunk.bytes();
+
+                output.writeShort(key.length);
+
+                output.write(key);
+
+                output.writeInt(chunk.count());
+
+                output.writeLong(chunk.firstTimestamp());
+
+                output.writeLong(chunk.lastTimestamp());
+
+                output.writeInt(bytes.length);
+
+                output.write(bytes);
+            }
+
+            output.flush();
+
+            channel.force(true);
+        }
+
+        Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE);
+
+        try (var directory = FileChannel.open(path.getParent(), StandardOpenOption.READ))
+        {
+            directory.force(true);
+        }
+
+        return open(path);
+    }
+
+    public static Segment open(Path path) throws IOException
+    {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.limit() < 16 || buffer.getInt(0) != MAGIC)
+            {
+                throw new IOException("Not a segment file: " + path);
+            }
+
+            var segment = new Segment(path, buffer.getLong(4), buffer);
+
+            var position = 16;
+
+            for (int i = buffer.getInt(12); i > 0; i--)
+            {
+                var keyLength = Short.toUnsignedInt(buffer.getShort(position));
+
+                var key = new byte[keyLength];
+
+                buffer.get(position + 2, key);
+
+                position += 2 + keyLength;
+
+                var entry = new Entry(buffer.getInt(position), buffer.getLong(position + 4), buffer.getLong(position + 12), position + 24);
+
+                segment.entries.put(new String(key, StandardCharsets.UTF_8), entry);
+
+                position += 24 + buffer.getInt(position + 20);
+            }
+
+            if (position > buffer.limit())
+            {
+                throw new IOException("Truncated segment file: " + path);
+            }
+
+            return segment;
+        }
+        catch (IndexOutOfBoundsException exception)
+        {
+            throw new IOException("Truncated segment file: " + path, exception);
+        }
+    }
+
+    public long partition()
+    {
+        return partition;
+    }
+
+    public Path path()
+    {
+        return path;
+    }
+
+    //Every series whose key starts with prefix, points between from and to
+    public void read(String prefix, long from, long to, SeriesConsumer consumer)
+    {
+        for (var entry : entries.subMap(prefix, prefix + Character.MAX_VALUE).entrySet())
+        {
+            var value = entry.getValue();
+
+            if (value.lastTimestamp() < from || value.firstTimestamp() > to)
+            {
+                continue;
+            }
+
+            Chunk.decode(buffer, value.offset(), value.count(), from, to,
+                    (timestamp, point) -> consumer.accept(entry.getKey(), timestamp, point));
+        }
+    }
+
+    public interface SeriesConsumer
+    {
+        void accept(String key, long timestamp, double value);
+    }
+}
@@ -0,0 +1,250 @@
+package org.example.tsdb;
+
+import io.vertx.core.json.JsonArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+//Series split into fixed time partitions, the partitions still being written stay in memory and are sealed into segment files
+//Only used from one event loop, the methods that touch files are the ones meant to be run as blocking code
+public class SeriesStore
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(SeriesStore.class);
+
+    private static final String QUARANTINE = ".corrupt";
+
+    private final Path directory;
+
+    private final long partitionSize; //Seconds
+
+    private final TreeMap<Long, TreeMap<String, Chunk>> head = new TreeMap<>();
+
+    private final Set<Long> sealing = new HashSet<>();
+
+    private long late; //Points dropped because their partition was being sealed, since the last call of takeLate
+
+    //A partition has more than one segment if it was sealed at shutdown and written to again after a restart
+    private final TreeMap<Long, List<Segment>> segments = new TreeMap<>();
+
+    //Blocking, opens the segments left by earlier runs
+    public SeriesStore(Path directory, long partitionSize) throws IOException
+    {
+        this.directory = directory;
+
+        this.partitionSize = partitionSize;
+
+        Files.createDirectories(directory);
+
+        try (var paths = Files.list(directory))
+        {
+            for (var path : paths.sorted().toList())
+            {
+                if (path.toString().endsWith(Segment.EXTENSION))
+                {
+                    try
+                    {
+                        var segment = Segment.open(path);
+
+                        segments.computeIfAbsent(segment.partition(), key -> new ArrayList<>()).add(segment);
+                    }
+                    catch (IOException exception)
+                    {
+                        //Its points are lost, the rest of the store is still readable, the file is kept to look at
+                        LOGGER.error("Moving unreadable segment {} aside: {}", path, exception.getMessage());
+
+                        Files.move(path, Path.of(path + QUARANTINE), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+                else if (path.toString().endsWith(".tmp"))
+                {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    public long partitionOf(long timestamp)
+    {
+        return timestamp - Math.floorMod(timestamp, partitionSize);
+    }
+
+    public long takeLate()
+    {
+        var count = late;
+
+        late = 0;
+
+        return count;
+    }
+
+    //Returns false if the point is older than the last point of its series, or its partition is being sealed
+    public boolean append(String key, long timestamp, double value)
+    {
+        var partition = partitionOf(timestamp);
+
+        if (sealing.contains(partition))
+        {
+            late++;
+
+            return false;
+        }
+
+        return head.computeIfAbsent(partition, start -> new TreeMap<>())
+                .computeIfAbsent(key, name -> new Chunk())
+                .append(timestamp, value);
+    }
+
+    //Partitions that ended at least delay seconds ago, they are marked so no more points go into them
+    public Map<Long, SortedMap<String, Chunk>> beginSeal(long now, long delay)
+    {
+        var due = new TreeMap<Long, SortedMap<String, Chunk>>();
+
+        for (var entry : head.entrySet())
+        {
+            if (entry.getKey() + partitionSize + delay <= now && sealing.add(entry.getKey()))
+            {
+                due.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return due;
+    }
+
+    //Every open partition, used at shutdown
+    public Map<Long, SortedMap<String, Chunk>> beginSealAll()
+    {
+        return beginSeal(Long.MAX_VALUE / 2, 0);
+    }
+
+    //Blocking, the chunks are no longer appended to once their partition is sealing
+    public Segment writeSegment(long partition, SortedMap<String, Chunk> chunks) throws IOException
+    {
+        return Segment.write(directory.resolve(partition + "-" + System.currentTimeMillis() + Segment.EXTENSION), partition, chunks);
+    }
+
+    //Segment is null if writing failed, the partition then stays in memory and is sealed again later
+    public void endSeal(long partition, Segment segment)
+    {
+        sealing.remove(partition);
+
+        if (segment != null)
+        {
+            head.remove(partition);
+
+            segments.computeIfAbsent(partition, key -> new ArrayList<>()).add(segment);
+        }
+    }
+
+    //Drops partitions that ended before now - retention, the returned segments still have to be deleted
+    public List<Segment> expire(long now, long retention)
+    {
+        var expired = new ArrayList<Segment>();
+
+        var oldest = now - retention - partitionSize;
+
+        var iterator = segments.headMap(oldest, true).entrySet().iterator();
+
+        while (iterator.hasNext())
+        {
+            expired.addAll(iterator.next().getValue());
+
+            iterator.remove();
+        }
+
+        head.headMap(oldest, true).keySet().removeIf(partition -> !sealing.contains(partition));
+
+        return expired;
+    }
+
+    //Blocking
+    public static void delete(List<Segment> expired) throws IOException
+    {
+        for (var segment : expired)
+        {
+            Files.deleteIfExists(segment.path());
+        }
+    }
+
+    //Taken on the event loop, run as blocking code, returns the points of every series whose key starts with prefix
+    public Query query(String prefix, long from, long to)
+    {
+        var sources = new ArrayList<Consumer<Segment.SeriesConsumer>>();
+
+        var partitions = new TreeSet<Long>();
+
+        partitions.addAll(segments.subMap(partitionOf(from), true, to, true).keySet());
+
+        partitions.addAll(head.subMap(partitionOf(from), true, to, true).keySet());
+
+        for (var partition : partitions)
+        {
+            for (var segment : segments.getOrDefault(partition, List.of()))
+            {
+                sources.add(consumer -> segment.read(prefix, from, to, consumer));
+            }
+
+            var chunks = head.get(partition);
+
+            if (chunks == null)
+            {
+                continue;
+            }
+
+            //Head chunks keep growing, so their bytes are copied here
+            for (var entry : chunks.subMap(prefix, prefix + Character.MAX_VALUE).entrySet())
+            {
+                var chunk = entry.getValue();
+
+                if (chunk.lastTimestamp() < from || chunk.firstTimestamp() > to)
+                {
+                    continue;
+                }
+
+                var key = entry.getKey();
+
+                var bytes = ByteBuffer.wrap(chunk.bytes());
+
+                var count = chunk.count();
+
+                sources.add(consumer -> Chunk.decode(bytes, 0, count, from, to, (timestamp, value) -> consumer.accept(key, timestamp, value)));
+            }
+        }
+
+        return new Query(sources);
+    }
+
+    public static class Query
+    {
+        private final List<Consumer<Segment.SeriesConsumer>> sources;
+
+        private Query(List<Consumer<Segment.SeriesConsumer>> sources)
+        {
+            this.sources = sources;
+        }
+
+        //Points of every series as [timestamp, value] pairs in time order
+        public Map<String, JsonArray> run()
+        {
+            var series = new TreeMap<String, JsonArray>();
+
+            for (var source : sources)
+            {
+                source.accept((key, timestamp, value) -> series.computeIfAbsent(key, name -> new JsonArray()).add(new JsonArray().add(timestamp).add(value)));
+            }
+            return series;
+        }
+    }
+}
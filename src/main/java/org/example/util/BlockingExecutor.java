@@ -0,0 +1,72 @@
+package org.example.util;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import org.example.Constants;
+import org.example.Main;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+//Runs blocking code such as plugin processes and probes, on a named worker pool or on one virtual thread per task (-Dblocking.mode=virtual)
+public class BlockingExecutor
+{
+    //Creates no threads until a task is submitted
+    private static final ExecutorService virtualThreads = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Vertx vertx;
+
+    private final WorkerExecutor worker;
+
+    private BlockingExecutor(Vertx vertx, WorkerExecutor worker)
+    {
+        this.vertx = vertx;
+
+        this.worker = worker;
+    }
+
+    //Pool size only applies to worker mode, virtual threads are not pooled
+    public static BlockingExecutor create(String name, int size)
+    {
+        return create(Main.vertx, name, size, Constants.VIRTUAL_THREADS);
+    }
+
+    public static BlockingExecutor create(Vertx vertx, String name, int size, boolean virtual)
+    {
+        return new BlockingExecutor(vertx, virtual ? null : vertx.createSharedWorkerExecutor(name, size, 60, TimeUnit.SECONDS));
+    }
+
+    //Result is delivered on the context of the caller, as executeBlocking does
+    public <T> Future<T> execute(Callable<T> task)
+    {
+        if (worker != null)
+        {
+            return worker.executeBlocking(task, false);
+        }
+
+        var context = vertx.getOrCreateContext();
+
+        var promise = Promise.<T>promise();
+
+        virtualThreads.execute(() ->
+        {
+            try
+            {
+                var result = task.call();
+
+                context.runOnContext(v -> promise.complete(result));
+            }
+            //Errors as well, a promise that never completes would hold its ConcurrencyLimiter slot for good
+            catch (Throwable throwable)
+            {
+                context.runOnContext(v -> promise.fail(throwable));
+            }
+        });
+
+        return promise.future();
+    }
+}
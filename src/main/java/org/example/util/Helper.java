@@ -2,12 +2,15 @@ package org.example.util;
 
 import io.vertx.core.json.JsonObject;
 import org.example.Constants;
+import org.example.database.AlertRuleRow;
+import org.example.database.Store;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
-import java.util.Map;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
@@ -33,20 +36,10 @@ public class Helper
         return port <= 1 || port >= 65535;
     }
 
-    public static boolean isNotUnique(Map<Long, JsonObject> map, String comparator, String column)
+    //Column is also the name of the index kept on it by the store
+    public static boolean isNotUnique(Store<?> map, String comparator, String column)
     {
-        var unique = false;
-
-        for(var entry : map.entrySet())
-        {
-            if(comparator.equals(entry.getValue().getString(column)))
-            {
-                unique = true;
-
-                break;
-            }
-        }
-        return unique;
+        return map.contains(column, comparator);
     }
 
     public static void checkConnection(JsonObject deviceInfo)
@@ -104,21 +97,32 @@ public class Helper
 
     public static boolean isProvisioned(String deviceIp)
     {
-        for(var device : objects.values())
-        {
-            if(deviceIp.equals(device.getString("ip")))
-            {
-                return true;
-            }
-        }
-        return false;
+        return objects.contains("ip", deviceIp);
     }
 
-    public static void insertInMap(Map<Long, JsonObject> map,Long key, JsonObject data)
+    public static <T> void insertInMap(Store<T> map,Long key, T data)
     {
         map.put(key,data);
     }
 
+    //Only the keys of the body that are known columns, other keys never reach the SQL
+    public static JsonObject columns(JsonObject requestBody, Set<String> columns)
+    {
+        var row = new JsonObject();
+
+        if (requestBody != null)
+        {
+            requestBody.forEach(entry ->
+            {
+                if (columns.contains(entry.getKey()))
+                {
+                    row.put(entry.getKey(), entry.getValue());
+                }
+            });
+        }
+        return row;
+    }
+
     public static boolean validateField(String fieldValue)
     {
         return fieldValue == null || fieldValue.isEmpty();
@@ -215,5 +219,52 @@ public class Helper
 
         return "";
     }
-}
 
+    //Checks a rule in its column form, ruleId is the rule being updated or null for a new one
+    public static String validateAlertRule(JsonObject rule, Long ruleId)
+    {
+        if (rule == null)
+        {
+            return "Request body cannot be null";
+        }
+
+        var name = rule.getString("rule_name");
+
+        if (validateField(name) || validateField(rule.getString("metric_group_name")) || validateField(rule.getString("metric")))
+        {
+            return "Please enter alert rule name, metric group name and metric";
+        }
+
+        if (!AlertRuleRow.THRESHOLD.equals(rule.getString("rule_type")) && !AlertRuleRow.RATE.equals(rule.getString("rule_type")))
+        {
+            return "Rule type should be threshold or rate";
+        }
+
+        if (!List.of(">", ">=", "<", "<=").contains(rule.getString("operator")))
+        {
+            return "Operator should be one of >, >=, < and <=";
+        }
+
+        if (!(rule.getValue("threshold") instanceof Number))
+        {
+            return "Threshold should be a number";
+        }
+
+        if (rule.getValue("rule_object") != null && !(rule.getValue("rule_object") instanceof Number))
+        {
+            return "Object ID should be a number";
+        }
+
+        if (rule.getValue("rule_object") != null && !objects.containsKey(rule.getLong("rule_object")))
+        {
+            return "Object not found for this ID";
+        }
+
+        if (alertRules.find("rule_name", name).stream().anyMatch(id -> !id.equals(ruleId)))
+        {
+            return "Alert rule name should be unique";
+        }
+
+        return "";
+    }
+}
@@ -0,0 +1,54 @@
+package org.example.util;
+
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import org.example.Constants;
+import org.example.database.Store;
+
+//Every API response goes out through here, compact JSON unless the request has ?pretty=true
+public class ResponseWriter
+{
+    public static void send(RoutingContext context, int statusCode, JsonObject body)
+    {
+        context.response()
+                .setStatusCode(statusCode)
+                .putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+                .end(pretty(context) ? body.encodePrettily() : body.encode());
+    }
+
+    public static boolean pretty(RoutingContext context)
+    {
+        return "true".equals(context.request().getParam("pretty"));
+    }
+
+    //Tags a response read from store with its version and answers 304 when the client already holds that version
+    //The tag also covers the node and the URI, versions start again on every node and start and each page or ID differs
+    public static boolean notModified(RoutingContext context, Store<?> store)
+    {
+        var etag = "\"" + Long.toHexString(store.version()) + "-"
+                + Integer.toHexString((Constants.NODE_ID + context.request().uri()).hashCode()) + "\"";
+
+        context.response().putHeader(HttpHeaders.ETAG, etag);
+
+        var ifNoneMatch = context.request().getHeader(HttpHeaders.IF_NONE_MATCH);
+
+        if (ifNoneMatch == null)
+        {
+            return false;
+        }
+
+        for (var tag : ifNoneMatch.split(","))
+        {
+            tag = tag.trim();
+
+            if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag))
+            {
+                context.response().setStatusCode(304).end();
+
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,116 @@
+package org.example.sevices;
+
+import io.vertx.core.json.JsonObject;
+import org.example.Main;
+import org.example.database.AlertRuleRow;
+import org.example.database.ObjectRow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.example.Main.alertRules;
+import static org.example.Main.objects;
+
+//Cost of evaluating one poll result against the rules that cover it, rules of other groups and other objects should not add to it
+//Run with: mvn -Pbenchmark test-compile exec:exec -Dbenchmark=AlertEngineBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AlertEngineBenchmark
+{
+    //Rules on the polled group for every object, half threshold and half rate rules
+    @Param({"10", "100"})
+    public int rules;
+
+    //Objects polled in turn, each with a rule of its own on the polled group
+    @Param({"1", "1000", "10000"})
+    public int objectCount;
+
+    //Rules on a group that is not polled
+    @Param({"0", "10000"})
+    public int otherRules;
+
+    private AlertEngine engine;
+
+    private JsonObject[] results;
+
+    private long timestamp;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        var id = 0L;
+
+        //Thresholds are never reached, so no alert is raised and only the evaluation is measured
+        for (int i = 0; i < rules + otherRules; i++)
+        {
+            id++;
+
+            alertRules.put(id, rule(id, i < rules ? "Linux.CPU" : "Linux.Disk", id % 2 == 0 ? AlertRuleRow.RATE : AlertRuleRow.THRESHOLD, null));
+        }
+
+        results = new JsonObject[objectCount];
+
+        for (int i = 0; i < objectCount; i++)
+        {
+            long objectId = i + 1;
+
+            var ip = "10." + (i >> 16 & 255) + "." + (i >> 8 & 255) + "." + (i & 255);
+
+            objects.put(objectId, new ObjectRow(objectId, 1, ip, 22, "benchmark-" + objectId, "linux"));
+
+            id++;
+
+            alertRules.put(id, rule(id, "Linux.CPU", AlertRuleRow.THRESHOLD, objectId));
+
+            results[i] = new JsonObject()
+                    .put("metric.group.name", "Linux.CPU")
+                    .put("metrics", new JsonObject()
+                            .put("ip", ip)
+                            .put("result", new JsonObject().put("cpu", new JsonObject().put("percent", "42.5"))));
+        }
+
+        engine = new AlertEngine();
+
+        engine.init(Main.vertx, Main.vertx.getOrCreateContext());
+    }
+
+    private static AlertRuleRow rule(long id, String group, String type, Long object)
+    {
+        return new AlertRuleRow(id, "rule-" + id, group, "cpu.percent", type, ">", 1e12, "Major", object);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception
+    {
+        Main.vertx.close().toCompletionStage().toCompletableFuture().get();
+    }
+
+    //Every result is a new poll of the next object, an older timestamp would be skipped
+    @Benchmark
+    public void evaluate()
+    {
+        var result = results[next];
+
+        next = (next + 1) % results.length;
+
+        engine.evaluate(result.put("timestamp", String.valueOf(++timestamp)));
+    }
+}
@@ -0,0 +1,153 @@
+package org.example.sevices;
+
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.json.JsonObject;
+import org.example.Constants;
+import org.example.Main;
+import org.example.database.AlertRuleRow;
+import org.example.database.ObjectRow;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.example.Main.alertRules;
+import static org.example.Main.objects;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class AlertEngineTest
+{
+    private static final String GROUP = "Linux.CPU";
+
+    private final LinkedBlockingQueue<JsonObject> alerts = new LinkedBlockingQueue<>();
+
+    private MessageConsumer<JsonObject> consumer;
+
+    private AlertEngine engine;
+
+    @BeforeEach
+    void setUp()
+    {
+        objects.put(1L, new ObjectRow(1, 1, "10.0.0.1", 22, "first", "linux"));
+
+        objects.put(2L, new ObjectRow(2, 1, "10.0.0.2", 22, "second", "linux"));
+
+        //A local consumer is registered as soon as it is created
+        consumer = Main.vertx.eventBus().<JsonObject>localConsumer(Constants.ALERT, message -> alerts.add(message.body()));
+
+        engine = new AlertEngine();
+
+        engine.init(Main.vertx, Main.vertx.getOrCreateContext());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception
+    {
+        consumer.unregister().toCompletionStage().toCompletableFuture().get();
+
+        alertRules.values().stream().map(AlertRuleRow::ruleId).toList().forEach(alertRules::remove);
+
+        objects.remove(1L);
+
+        objects.remove(2L);
+    }
+
+    @Test
+    void thresholdRuleRaisesOnceAndClears() throws Exception
+    {
+        alertRules.put(1L, rule(1, AlertRuleRow.THRESHOLD, 80, null));
+
+        evaluate("10.0.0.1", 100, 50);
+
+        assertNoAlert();
+
+        evaluate("10.0.0.1", 110, 90);
+
+        assertAlert("raised", 1, 90);
+
+        //Still breached, nothing new to report
+        evaluate("10.0.0.1", 120, 95);
+
+        assertNoAlert();
+
+        evaluate("10.0.0.1", 130, 70);
+
+        assertAlert("cleared", 1, 70);
+    }
+
+    @Test
+    void rateRuleOnlySetsItsBaselineOnTheFirstSample() throws Exception
+    {
+        alertRules.put(1L, rule(1, AlertRuleRow.RATE, 1, null));
+
+        //A large first value is no change yet
+        evaluate("10.0.0.1", 1000, 1_000_000);
+
+        assertNoAlert();
+
+        evaluate("10.0.0.1", 1010, 1_000_100);
+
+        assertAlert("raised", 1, 10);
+
+        evaluate("10.0.0.1", 1020, 1_000_105);
+
+        assertAlert("cleared", 1, 0.5);
+    }
+
+    @Test
+    void olderResultsAndRulesOfOtherObjectsAreIgnored() throws Exception
+    {
+        alertRules.put(1L, rule(1, AlertRuleRow.THRESHOLD, 80, 2L));
+
+        //Rule of the second object, results of the first one do not reach it
+        evaluate("10.0.0.1", 100, 90);
+
+        assertNoAlert();
+
+        evaluate("10.0.0.2", 100, 90);
+
+        assertAlert("raised", 2, 90);
+
+        //Arrives after a newer result, the rule keeps its state
+        evaluate("10.0.0.2", 90, 10);
+
+        assertNoAlert();
+    }
+
+    private static AlertRuleRow rule(long id, String type, double threshold, Long object)
+    {
+        return new AlertRuleRow(id, "rule-" + id, GROUP, "cpu.percent", type, ">", threshold, "Major", object);
+    }
+
+    private void evaluate(String ip, long timestamp, double value)
+    {
+        engine.evaluate(new JsonObject()
+                .put("metric.group.name", GROUP)
+                .put("timestamp", String.valueOf(timestamp))
+                .put("metrics", new JsonObject()
+                        .put("ip", ip)
+                        .put("result", new JsonObject().put("cpu", new JsonObject().put("percent", value)))));
+    }
+
+    private void assertAlert(String state, long objectId, double value) throws InterruptedException
+    {
+        var alert = alerts.poll(5, TimeUnit.SECONDS);
+
+        assertNotNull(alert);
+
+        assertEquals(state, alert.getString("state"));
+
+        assertEquals(objectId, alert.getLong("object.id"));
+
+        assertEquals(value, alert.getDouble("value"), 1e-9);
+    }
+
+    private void assertNoAlert() throws InterruptedException
+    {
+        assertNull(alerts.poll(100, TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,170 @@
+package org.example.sevices;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryRecordFormatTest
+{
+    private final RecordFormat format = BinaryRecordFormat.INSTANCE;
+
+    private static JsonObject record(long timestamp, JsonObject result)
+    {
+        return new JsonObject().put("ip", "10.0.0.1").put("timestamp", timestamp).put("result", result);
+    }
+
+    private List<JsonObject> decode(Buffer data, int chunkSize)
+    {
+        var records = new ArrayList<JsonObject>();
+
+        var reader = format.reader();
+
+        for (int offset = 0; offset < data.length(); offset += chunkSize)
+        {
+            reader.feed(data.getBuffer(offset, Math.min(data.length(), offset + chunkSize)), records::add);
+        }
+
+        reader.end(records::add);
+
+        return records;
+    }
+
+    @Test
+    void roundTripsNegativeLongsNestedValuesAndNulls()
+    {
+        var result = new JsonObject()
+                .put("min", Long.MIN_VALUE)
+                .put("max", Long.MAX_VALUE)
+                .put("negative", -1L)
+                .put("zero", 0)
+                .put("ratio", -0.25)
+                .put("up", true)
+                .put("down", false)
+                .putNull("missing")
+                .put("name", "eth0 ü")
+                .put("empty", "")
+                .put("interfaces", new JsonArray()
+                        .add(new JsonObject().put("index", 1).put("errors", new JsonArray().add(-5L).addNull()))
+                        .add(new JsonArray())
+                        .add(new JsonObject()));
+
+        var decoded = decode(format.encode(record(-1700000000L, result)), 1 << 16);
+
+        assertEquals(1, decoded.size());
+
+        assertEquals(-1700000000L, decoded.getFirst().getLong("timestamp"));
+
+        assertEquals("10.0.0.1", decoded.getFirst().getString("ip"));
+
+        assertEquals(result.encode(), decoded.getFirst().getJsonObject("result").encode());
+    }
+
+    @Test
+    void decodesRecordsSplitAcrossChunks()
+    {
+        var data = Buffer.buffer();
+
+        var expected = new ArrayList<JsonObject>();
+
+        for (int i = 0; i < 3000; i++)
+        {
+            var result = new JsonObject().put("counter", (long) i * 1_000_003L).put("text", "x".repeat(i % 97));
+
+            expected.add(result);
+
+            data.appendBuffer(format.encode(record(i, result)));
+        }
+
+        assertTrue(data.length() > 3 * 65536);
+
+        for (var chunkSize : new int[]{1, 7, 65536})
+        {
+            var decoded = decode(data, chunkSize);
+
+            assertEquals(expected.size(), decoded.size());
+
+            for (int i = 0; i < expected.size(); i++)
+            {
+                assertEquals(i, decoded.get(i).getLong("timestamp"));
+
+                assertEquals(expected.get(i), decoded.get(i).getJsonObject("result"));
+            }
+        }
+    }
+
+    @Test
+    void positionStopsAtLastCompleteRecord()
+    {
+        var first = format.encode(record(1, new JsonObject().put("a", 1)));
+
+        var second = format.encode(record(2, new JsonObject().put("b", 2)));
+
+        var reader = format.reader();
+
+        var records = new ArrayList<JsonObject>();
+
+        reader.feed(Buffer.buffer().appendBuffer(first).appendBuffer(second.getBuffer(0, second.length() - 1)), records::add);
+
+        assertEquals(1, records.size());
+
+        assertEquals(first.length(), reader.position());
+    }
+
+    @Test
+    void truncatedTailFailsAtEnd()
+    {
+        var data = Buffer.buffer()
+                .appendBuffer(format.encode(record(1, new JsonObject().put("a", 1))))
+                .appendBuffer(format.encode(record(2, new JsonObject().put("b", 2))));
+
+        var truncated = data.getBuffer(0, data.length() - 3);
+
+        var records = new ArrayList<JsonObject>();
+
+        var reader = format.reader();
+
+        reader.feed(truncated, records::add);
+
+        assertEquals(1, records.size());
+
+        assertThrows(IllegalStateException.class, () -> reader.end(records::add));
+    }
+
+    @Test
+    void bigNumbersKeepTheirExactValue()
+    {
+        var result = new JsonObject()
+                .put("small", BigInteger.valueOf(-42))
+                .put("counter64", new BigInteger("18446744073709551615"))
+                .put("decimal", new BigDecimal("0.1000000000000000055511151231257827"))
+                .put("float", 1.5f);
+
+        var decoded = decode(format.encode(record(1, result)), 1 << 16).getFirst().getJsonObject("result");
+
+        assertEquals(-42L, decoded.getValue("small"));
+
+        assertEquals("18446744073709551615", decoded.getValue("counter64"));
+
+        assertEquals("0.1000000000000000055511151231257827", decoded.getValue("decimal"));
+
+        assertEquals(1.5, decoded.getValue("float"));
+    }
+
+    @Test
+    void rejectsValuesThatAreNotJson()
+    {
+        var result = new JsonObject().put("thread", (Object) new Object());
+
+        assertThrows(IllegalArgumentException.class, () -> format.encode(record(1, result)));
+    }
+}
@@ -0,0 +1,172 @@
+package org.example.sevices;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileSenderTest
+{
+    private static final int RECORDS = 200;
+
+    @TempDir
+    Path storage;
+
+    @TempDir
+    Path logDirectory;
+
+    private Vertx vertx;
+
+    private StandInConsumer consumer;
+
+    @BeforeEach
+    void setUp()
+    {
+        vertx = Vertx.vertx();
+
+        consumer = new StandInConsumer();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception
+    {
+        vertx.close().toCompletionStage().toCompletableFuture().get();
+
+        consumer.close();
+    }
+
+    private Path writeFile(String name) throws Exception
+    {
+        var data = Buffer.buffer();
+
+        for (int i = 0; i < RECORDS; i++)
+        {
+            data.appendBuffer(BinaryRecordFormat.INSTANCE.encode(new JsonObject()
+                    .put("ip", "10.0.0.1")
+                    .put("timestamp", 1700000000L)
+                    .put("result", new JsonObject().put("n", i))));
+        }
+
+        var file = storage.resolve(name);
+
+        Files.write(file, data.getBytes());
+
+        return file;
+    }
+
+    private void send(Path file) throws Exception
+    {
+        var sender = new FileSender(storage.toString(), consumer.endpoint(), true, logDirectory.resolve("sender.log").toString());
+
+        vertx.deployVerticle(sender).toCompletionStage().toCompletableFuture().get();
+
+        for (int i = 0; i < 300 && Files.exists(file); i++)
+        {
+            Thread.sleep(100);
+        }
+
+        assertFalse(Files.exists(file), "file should be deleted once every record is acknowledged");
+    }
+
+    //Times each record n of the file was received
+    private Map<Integer, Integer> counts()
+    {
+        var counts = new HashMap<Integer, Integer>();
+
+        for (var message : consumer.received())
+        {
+            assertEquals("1700000000.txt", message.getString("filename"));
+
+            var n = new JsonObject(message.getString("content")).getJsonObject("result").getInteger("n");
+
+            counts.merge(n, 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    @Test
+    void deliversEveryRecordOnceWhenAcknowledged() throws Exception
+    {
+        var file = writeFile("1700000000.bin");
+
+        send(file);
+
+        var counts = counts();
+
+        assertEquals(RECORDS, counts.size());
+
+        assertTrue(counts.values().stream().allMatch(count -> count == 1));
+
+        var sequences = consumer.received().stream().mapToLong(message -> message.getLong("sequence")).toArray();
+
+        for (int i = 1; i < sequences.length; i++)
+        {
+            assertTrue(sequences[i] > sequences[i - 1]);
+        }
+
+        assertEquals(0, new SenderLog(logDirectory.resolve("sender.log").toString()).offset(file.getFileName().toString()));
+    }
+
+    @Test
+    void resendsFromLastAcknowledgedRecordAfterTimeout() throws Exception
+    {
+        //First 50 records are acknowledged, the next 10 messages are not, so the sender times out and resends
+        consumer.withholdAcknowledgements(50, 10);
+
+        send(writeFile("1700000000.bin"));
+
+        var counts = counts();
+
+        assertEquals(RECORDS, counts.size());
+
+        for (int n = 0; n < 50; n++)
+        {
+            assertEquals(1, counts.get(n), "acknowledged record " + n + " must not be resent");
+        }
+
+        assertTrue(consumer.received().size() > RECORDS, "unacknowledged records should have been resent");
+    }
+
+    @Test
+    void resumesFromLoggedOffset() throws Exception
+    {
+        var file = writeFile("1700000000.bin");
+
+        //Offset left by an earlier run that had the first 120 records acknowledged
+        var offset = 0L;
+
+        for (int i = 0; i < 120; i++)
+        {
+            offset += BinaryRecordFormat.INSTANCE.encode(new JsonObject()
+                    .put("ip", "10.0.0.1")
+                    .put("timestamp", 1700000000L)
+                    .put("result", new JsonObject().put("n", i))).length();
+        }
+
+        var log = new SenderLog(logDirectory.resolve("sender.log").toString());
+
+        log.acknowledge(file.getFileName().toString(), offset);
+
+        log.close();
+
+        send(file);
+
+        var counts = counts();
+
+        assertEquals(RECORDS - 120, counts.size());
+
+        assertTrue(counts.keySet().stream().allMatch(n -> n >= 120));
+    }
+}
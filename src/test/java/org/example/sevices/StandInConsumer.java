@@ -0,0 +1,102 @@
+package org.example.sevices;
+
+import io.vertx.core.json.JsonObject;
+import org.zeromq.SocketType;
+import org.zeromq.ZContext;
+import org.zeromq.ZMQ;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//Local stand-in for the consumer of FileSender, a ROUTER that acknowledges every record with its sequence number
+//Acknowledgements of a range of records can be withheld to make the sender time out and resend
+class StandInConsumer implements AutoCloseable
+{
+    private final ZContext context = new ZContext();
+
+    private final ZMQ.Socket socket;
+
+    private final String endpoint;
+
+    private final Thread thread;
+
+    private final List<JsonObject> received = new ArrayList<>();
+
+    private volatile boolean closed;
+
+    private int withholdAfter = Integer.MAX_VALUE;
+
+    private int withholdCount;
+
+    StandInConsumer()
+    {
+        socket = context.createSocket(SocketType.ROUTER);
+
+        socket.setReceiveTimeOut(100);
+
+        endpoint = "tcp://127.0.0.1:" + socket.bindToRandomPort("tcp://127.0.0.1");
+
+        thread = Thread.ofPlatform().name("stand-in-consumer").start(this::receive);
+    }
+
+    String endpoint()
+    {
+        return endpoint;
+    }
+
+    //Records after the first after ones get no acknowledgement, count times
+    synchronized void withholdAcknowledgements(int after, int count)
+    {
+        withholdAfter = after;
+
+        withholdCount = count;
+    }
+
+    synchronized List<JsonObject> received()
+    {
+        return new ArrayList<>(received);
+    }
+
+    private void receive()
+    {
+        while (!closed)
+        {
+            var identity = socket.recv();
+
+            if (identity == null)
+            {
+                continue;
+            }
+
+            var message = new JsonObject(socket.recvStr());
+
+            boolean acknowledge;
+
+            synchronized (this)
+            {
+                received.add(message);
+
+                acknowledge = received.size() <= withholdAfter || withholdCount-- <= 0;
+            }
+
+            if (acknowledge)
+            {
+                socket.sendMore(identity);
+
+                socket.send(String.valueOf(message.getLong("sequence")));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException
+    {
+        closed = true;
+
+        thread.join();
+
+        socket.close();
+
+        context.close();
+    }
+}
@@ -0,0 +1,217 @@
+package org.example.tsdb;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChunkTest
+{
+    private record Point(long timestamp, double value)
+    {
+
+    }
+
+    private static Chunk encode(List<Point> points)
+    {
+        var chunk = new Chunk();
+
+        for (var point : points)
+        {
+            assertTrue(chunk.append(point.timestamp(), point.value()));
+        }
+        return chunk;
+    }
+
+    private static List<Point> decode(Chunk chunk, long from, long to)
+    {
+        var points = new ArrayList<Point>();
+
+        Chunk.decode(ByteBuffer.wrap(chunk.bytes()), 0, chunk.count(), from, to, (timestamp, value) -> points.add(new Point(timestamp, value)));
+
+        return points;
+    }
+
+    //Values are compared bit for bit, so NaN payloads and -0.0 count as well
+    private static void assertRoundTrip(List<Point> points)
+    {
+        var decoded = decode(encode(points), Long.MIN_VALUE, Long.MAX_VALUE);
+
+        assertEquals(points.size(), decoded.size());
+
+        for (int i = 0; i < points.size(); i++)
+        {
+            assertEquals(points.get(i).timestamp(), decoded.get(i).timestamp(), "timestamp of point " + i);
+
+            assertEquals(Double.doubleToRawLongBits(points.get(i).value()), Double.doubleToRawLongBits(decoded.get(i).value()), "value of point " + i);
+        }
+    }
+
+    @Test
+    void identicalValuesAtRegularIntervalsCostTwoBitsEach()
+    {
+        var points = new ArrayList<Point>();
+
+        for (int i = 0; i < 1000; i++)
+        {
+            points.add(new Point(1_700_000_000L + i * 60L, 42.5));
+        }
+
+        assertRoundTrip(points);
+
+        //Header of 16 bytes, the second point's delta takes 10 bits, every other point one bit of timestamp and one of value
+        assertTrue(encode(points).bytes().length <= 16 + 2 + 1000 * 2 / 8 + 1);
+    }
+
+    @Test
+    void signChangesAndSpecialValues()
+    {
+        var values = new double[]{1.0, -1.0, 0.0, -0.0, 3.25, -3.25, Double.MAX_VALUE, -Double.MAX_VALUE, Double.MIN_VALUE,
+                -Double.MIN_VALUE, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NaN,
+                Double.longBitsToDouble(0x7ff8dead0000beefL), 1e-300, -1e300, 0.1, 0.2, 0.30000000000000004};
+
+        var points = new ArrayList<Point>();
+
+        for (int i = 0; i < values.length * 20; i++)
+        {
+            points.add(new Point(1000 + i, values[(i * 7) % values.length]));
+        }
+
+        assertRoundTrip(points);
+    }
+
+    @Test
+    void nanSeriesRoundTrips()
+    {
+        var points = new ArrayList<Point>();
+
+        for (int i = 0; i < 100; i++)
+        {
+            points.add(new Point(i + 1, i % 3 == 0 ? Double.NaN : i));
+        }
+
+        assertRoundTrip(points);
+    }
+
+    @Test
+    void deltaOfDeltaBucketBoundariesAndLargeGaps()
+    {
+        var points = new ArrayList<Point>();
+
+        var timestamp = 0L;
+
+        var base = 3000L;
+
+        //Every delta of delta on both edges of each encoding range and just past it, each followed by a step back to base
+        for (var deltaOfDelta : new long[]{0, -63, 64, -64, 65, -255, 256, -256, 257, -2047, 2048, -2048, 2049})
+        {
+            timestamp += base;
+
+            points.add(new Point(timestamp, points.size()));
+
+            timestamp += base + deltaOfDelta;
+
+            points.add(new Point(timestamp, points.size()));
+        }
+
+        //Gaps far beyond 12 bits, a year and decades between polls, then back to a short interval
+        for (var gap : new long[]{86_400 * 365L, 1, 1_000_000_000L, 60, 4_000_000_000L, 1})
+        {
+            timestamp += gap;
+
+            points.add(new Point(timestamp, -points.size()));
+        }
+
+        assertRoundTrip(points);
+    }
+
+    @Test
+    void negativeAndExtremeTimestamps()
+    {
+        assertRoundTrip(List.of(new Point(-5_000_000_000L, 1), new Point(-1, 2), new Point(0, 3), new Point(Long.MAX_VALUE / 2, 4)));
+    }
+
+    @Test
+    void rejectsPointsThatAreNotNewer()
+    {
+        var chunk = encode(List.of(new Point(100, 1), new Point(160, 2)));
+
+        assertFalse(chunk.append(160, 3));
+
+        assertFalse(chunk.append(100, 3));
+
+        assertEquals(2, chunk.count());
+
+        assertEquals(100, chunk.firstTimestamp());
+
+        assertEquals(160, chunk.lastTimestamp());
+    }
+
+    @Test
+    void rangeIsInclusiveAtBothEnds()
+    {
+        var points = new ArrayList<Point>();
+
+        for (int i = 0; i < 50; i++)
+        {
+            points.add(new Point(i * 10L, i));
+        }
+
+        var chunk = encode(points);
+
+        assertEquals(points.subList(10, 21), decode(chunk, 100, 200));
+
+        assertEquals(points.subList(0, 1), decode(chunk, Long.MIN_VALUE, 0));
+
+        assertEquals(points.subList(49, 50), decode(chunk, 490, Long.MAX_VALUE));
+
+        assertEquals(List.of(), decode(chunk, 101, 109));
+    }
+
+    @Test
+    void decodesAtAnOffsetOfALargerBuffer()
+    {
+        var chunk = encode(List.of(new Point(10, 1.5), new Point(20, -2.5), new Point(35, 1.5)));
+
+        var bytes = chunk.bytes();
+
+        var buffer = ByteBuffer.allocate(bytes.length + 13);
+
+        buffer.position(7);
+
+        buffer.put(bytes);
+
+        var points = new ArrayList<Point>();
+
+        Chunk.decode(buffer, 7, chunk.count(), 0, 100, (timestamp, value) -> points.add(new Point(timestamp, value)));
+
+        assertEquals(List.of(new Point(10, 1.5), new Point(20, -2.5), new Point(35, 1.5)), points);
+    }
+
+    @Test
+    void bitWriterAndReaderAgreeOnFieldsOfEveryWidth()
+    {
+        var writer = new BitWriter();
+
+        for (int width = 1; width <= 64; width++)
+        {
+            writer.writeBits(-1L >>> (64 - width) ^ (width % 2 == 0 ? 1 : 0), width);
+
+            writer.writeBit(width % 3 == 0);
+        }
+
+        var reader = new BitReader(ByteBuffer.wrap(writer.toByteArray()), 0);
+
+        for (int width = 1; width <= 64; width++)
+        {
+            assertEquals(-1L >>> (64 - width) ^ (width % 2 == 0 ? 1 : 0), reader.readBits(width), "field of " + width + " bits");
+
+            assertEquals(width % 3 == 0, reader.readBit());
+        }
+    }
+}
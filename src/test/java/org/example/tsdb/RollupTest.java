@@ -0,0 +1,77 @@
+package org.example.tsdb;
+
+import io.vertx.core.json.JsonArray;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RollupTest
+{
+    private static final long RESOLUTION = 3600;
+
+    private static final long PARTITION = 86400;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void bucketOpenAtShutdownIsMergedWithItsRestAfterRestart() throws Exception
+    {
+        var rollup = new Rollup(directory, RESOLUTION, PARTITION, 7 * PARTITION);
+
+        rollup.add("1|cpu|usage", 60, 10);
+
+        rollup.add("1|cpu|usage", 120, 30);
+
+        //What MetricStore.stop does
+        rollup.flushAll();
+
+        seal(rollup.store());
+
+        var restarted = new Rollup(directory, RESOLUTION, PARTITION, 7 * PARTITION);
+
+        restarted.add("1|cpu|usage", 180, 5);
+
+        restarted.add("1|cpu|usage", 240, 15);
+
+        //Once from the open bucket, once from a second written row of the same start
+        assertMerged(restarted.query("1|", 0, PARTITION).run().get("1|cpu|usage").getJsonArray(0));
+
+        restarted.flushAll();
+
+        assertMerged(restarted.query("1|", 0, PARTITION).run().get("1|cpu|usage").getJsonArray(0));
+
+        assertEquals(1, restarted.query("1|", 0, PARTITION).run().get("1|cpu|usage").size());
+    }
+
+    private static void assertMerged(JsonArray point)
+    {
+        assertEquals(0, point.getLong(0));
+
+        assertEquals(5.0, point.getDouble(1));
+
+        assertEquals(30.0, point.getDouble(2));
+
+        assertEquals(15.0, point.getDouble(3));
+
+        assertEquals(4, point.getLong(4));
+    }
+
+    private static void seal(SeriesStore store)
+    {
+        store.beginSealAll().forEach((partition, chunks) ->
+        {
+            try
+            {
+                store.endSeal(partition, store.writeSegment(partition, chunks));
+            }
+            catch (Exception exception)
+            {
+                throw new IllegalStateException(exception);
+            }
+        });
+    }
+}
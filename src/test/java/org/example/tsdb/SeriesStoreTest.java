@@ -0,0 +1,135 @@
+package org.example.tsdb;
+
+import io.vertx.core.json.JsonArray;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SeriesStoreTest
+{
+    private static final long PARTITION = 3600;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void queryJoinsSealedAndOpenPartitions() throws Exception
+    {
+        var store = new SeriesStore(directory, PARTITION);
+
+        //Both sides of a partition boundary
+        for (long timestamp = PARTITION - 300; timestamp < PARTITION + 300; timestamp += 60)
+        {
+            assertTrue(store.append("1|cpu|usage", timestamp, timestamp / 60.0));
+        }
+
+        //Only the first partition has ended
+        var sealing = store.beginSeal(2 * PARTITION - 1, 0);
+
+        assertEquals(1, sealing.size());
+
+        sealing.forEach((partition, chunks) ->
+        {
+            try
+            {
+                store.endSeal(partition, store.writeSegment(partition, chunks));
+            }
+            catch (Exception exception)
+            {
+                throw new IllegalStateException(exception);
+            }
+        });
+
+        var points = store.query("1|", 0, 10 * PARTITION).run().get("1|cpu|usage");
+
+        assertEquals(10, points.size());
+
+        for (int i = 0; i < points.size(); i++)
+        {
+            var point = points.getJsonArray(i);
+
+            assertEquals(PARTITION - 300 + i * 60L, point.getLong(0));
+
+            assertEquals(point.getLong(0) / 60.0, point.getDouble(1));
+        }
+
+        //A store opened again finds the sealed segment
+        var reopened = new SeriesStore(directory, PARTITION).query("1|", 0, PARTITION - 1).run();
+
+        assertEquals(5, reopened.getOrDefault("1|cpu|usage", new JsonArray()).size());
+    }
+
+    @Test
+    void countsPointsDroppedWhileTheirPartitionIsSealing() throws Exception
+    {
+        var store = new SeriesStore(directory, PARTITION);
+
+        assertTrue(store.append("1|cpu|usage", 60, 1));
+
+        var sealing = store.beginSeal(2 * PARTITION, 0);
+
+        assertFalse(store.append("1|cpu|usage", 120, 2));
+
+        assertFalse(store.append("1|cpu|usage", 180, 3));
+
+        assertEquals(2, store.takeLate());
+
+        assertEquals(0, store.takeLate());
+
+        sealing.forEach((partition, chunks) -> store.endSeal(partition, null));
+
+        //Writing failed, so the partition stays open and takes points again
+        assertTrue(store.append("1|cpu|usage", 240, 4));
+    }
+
+    @Test
+    void unreadableSegmentsAreMovedAsideInsteadOfFailingTheStore() throws Exception
+    {
+        var store = new SeriesStore(directory, PARTITION);
+
+        assertTrue(store.append("1|cpu|usage", 60, 1));
+
+        store.beginSealAll().forEach((partition, chunks) ->
+        {
+            try
+            {
+                store.endSeal(partition, store.writeSegment(partition, chunks));
+            }
+            catch (Exception exception)
+            {
+                throw new IllegalStateException(exception);
+            }
+        });
+
+        Path written;
+
+        try (var paths = Files.list(directory))
+        {
+            written = paths.filter(path -> path.toString().endsWith(Segment.EXTENSION)).findFirst().orElseThrow();
+        }
+
+        //What a power loss can leave behind when the rename survives and the data does not
+        Files.write(directory.resolve("7200-1" + Segment.EXTENSION), new byte[0]);
+
+        var bytes = Files.readAllBytes(written);
+
+        Files.write(directory.resolve("10800-1" + Segment.EXTENSION), Arrays.copyOf(bytes, bytes.length - 4));
+
+        var reopened = new SeriesStore(directory, PARTITION);
+
+        assertEquals(1, reopened.query("1|", 0, 10 * PARTITION).run().get("1|cpu|usage").size());
+
+        assertTrue(Files.exists(directory.resolve("7200-1" + Segment.EXTENSION + ".corrupt")));
+
+        assertTrue(Files.exists(directory.resolve("10800-1" + Segment.EXTENSION + ".corrupt")));
+
+        assertFalse(Files.exists(directory.resolve("10800-1" + Segment.EXTENSION)));
+    }
+}
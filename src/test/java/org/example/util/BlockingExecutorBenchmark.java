@@ -0,0 +1,78 @@
+package org.example.util;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+//Worker pool against virtual threads for tasks that mostly wait, as plugin processes and discovery probes do
+//Run with: mvn -Pbenchmark test-compile exec:exec -Dbenchmark=BlockingExecutorBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BlockingExecutorBenchmark
+{
+    @Param({"false", "true"})
+    public boolean virtual;
+
+    //Polls due at once, against the default pool of poll.threads=20
+    @Param({"20", "200", "2000"})
+    public int tasks;
+
+    @Param({"20"})
+    public int waitMillis;
+
+    private Vertx vertx;
+
+    private BlockingExecutor executor;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        vertx = Vertx.vertx();
+
+        executor = BlockingExecutor.create(vertx, "benchmark", 20, virtual);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception
+    {
+        vertx.close().toCompletionStage().toCompletableFuture().get();
+    }
+
+    //Time until every task of one round is done
+    @Benchmark
+    public Object round() throws Exception
+    {
+        var futures = new ArrayList<Future<Long>>(tasks);
+
+        for (int i = 0; i < tasks; i++)
+        {
+            futures.add(executor.execute(() ->
+            {
+                Thread.sleep(waitMillis);
+
+                return System.nanoTime();
+            }));
+        }
+
+        return Future.all(futures).toCompletionStage().toCompletableFuture().get();
+    }
+}
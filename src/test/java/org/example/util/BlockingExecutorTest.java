@@ -0,0 +1,56 @@
+package org.example.util;
+
+import io.vertx.core.Vertx;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BlockingExecutorTest
+{
+    private Vertx vertx;
+
+    @BeforeEach
+    void setUp()
+    {
+        vertx = Vertx.vertx();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception
+    {
+        vertx.close().toCompletionStage().toCompletableFuture().get();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void completesWithTheResult(boolean virtual) throws Exception
+    {
+        var executor = BlockingExecutor.create(vertx, "test", 2, virtual);
+
+        assertEquals(42, executor.execute(() -> 42).toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS));
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void failsWhenTheTaskThrowsAnError(boolean virtual)
+    {
+        var executor = BlockingExecutor.create(vertx, "test", 2, virtual);
+
+        var future = executor.<Integer>execute(() ->
+        {
+            throw new StackOverflowError("deep");
+        });
+
+        var failure = assertThrows(ExecutionException.class, () -> future.toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS));
+
+        assertInstanceOf(StackOverflowError.class, failure.getCause());
+    }
+}